@@ -75,6 +75,11 @@ public class BufferedRandomAccessFile implements RandomAccess {
         memory.setPosition(position);
     }
 
+    @Override
+    public int length() throws UncheckedIOException {
+        return memory.length();
+    }
+
     @Override
     public void trimToPosition() throws UncheckedIOException {
         if (!readOnly) {
@@ -24,7 +24,9 @@ package acmi.l2.clientmod.io;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.Objects;
 
 import static java.nio.charset.StandardCharsets.UTF_16LE;
 
@@ -135,6 +137,50 @@ public interface DataInput {
         return array;
     }
 
+    default void readShorts(short[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            readFully(buffer.array(), 0, n * Short.BYTES);
+            buffer.asShortBuffer().get(b, off, n);
+        }
+    }
+
+    default void readInts(int[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            readFully(buffer.array(), 0, n * Integer.BYTES);
+            buffer.asIntBuffer().get(b, off, n);
+        }
+    }
+
+    default void readLongs(long[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            readFully(buffer.array(), 0, n * Long.BYTES);
+            buffer.asLongBuffer().get(b, off, n);
+        }
+    }
+
+    default void readFloats(float[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            readFully(buffer.array(), 0, n * Float.BYTES);
+            buffer.asFloatBuffer().get(b, off, n);
+        }
+    }
+
     int getPosition() throws UncheckedIOException;
 
     static DataInput dataInput(InputStream inputStream, Charset charset) {
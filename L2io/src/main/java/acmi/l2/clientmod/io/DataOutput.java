@@ -24,7 +24,9 @@ package acmi.l2.clientmod.io;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.Objects;
 
 import static acmi.l2.clientmod.io.ByteUtil.compactIntToByteArray;
 import static java.nio.charset.StandardCharsets.UTF_16LE;
@@ -124,6 +126,50 @@ public interface DataOutput {
         writeBytes(array);
     }
 
+    default void writeShorts(short[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            buffer.asShortBuffer().put(b, off, n);
+            writeBytes(buffer.array(), 0, n * Short.BYTES);
+        }
+    }
+
+    default void writeInts(int[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            buffer.asIntBuffer().put(b, off, n);
+            writeBytes(buffer.array(), 0, n * Integer.BYTES);
+        }
+    }
+
+    default void writeLongs(long[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            buffer.asLongBuffer().put(b, off, n);
+            writeBytes(buffer.array(), 0, n * Long.BYTES);
+        }
+    }
+
+    default void writeFloats(float[] b, int off, int len) throws UncheckedIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(len, 0x1000) * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n; len > 0; off += n, len -= n) {
+            n = Math.min(len, 0x1000);
+            buffer.asFloatBuffer().put(b, off, n);
+            writeBytes(buffer.array(), 0, n * Float.BYTES);
+        }
+    }
+
     int getPosition() throws UncheckedIOException;
 
     static DataOutput dataOutput(OutputStream outputStream, Charset charset) {
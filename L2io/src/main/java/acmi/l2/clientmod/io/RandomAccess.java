@@ -30,6 +30,43 @@ public interface RandomAccess extends DataInput, DataOutput, AutoCloseable {
 
     void setPosition(int position) throws UncheckedIOException;
 
+    /**
+     * Returns the data length in bytes. The default implementation probes for the end of data
+     * and restores the position; implementations that know their length should override it.
+     */
+    default int length() throws UncheckedIOException {
+        int position = getPosition();
+        try {
+            int low = 0;
+            int high = 1;
+            while (hasByteAt(high - 1)) {
+                low = high;
+                high = high > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : high << 1;
+            }
+            high--;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (hasByteAt(mid)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        } finally {
+            setPosition(position);
+        }
+    }
+
+    private boolean hasByteAt(int position) {
+        try {
+            setPosition(position);
+            return readUnsignedByte() >= 0;
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     void trimToPosition() throws UncheckedIOException;
 
     RandomAccess openNewSession(boolean readOnly) throws UncheckedIOException;
@@ -41,6 +41,11 @@ public class RandomAccessByteBuffer implements RandomAccess {
         buffer.position(pos - position);
     }
 
+    @Override
+    public int length() {
+        return position + buffer.limit();
+    }
+
     @Override
     public void trimToPosition() {
         buffer.limit(buffer.position());
@@ -55,6 +60,15 @@ public class RandomAccessByteBuffer implements RandomAccess {
         }
     }
 
+    @Override
+    public void readFully(byte[] b, int off, int len) throws UncheckedIOException {
+        try {
+            buffer.get(b, off, len);
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
     @Override
     public void writeByte(int b) throws UncheckedIOException {
         try {
@@ -64,6 +78,15 @@ public class RandomAccessByteBuffer implements RandomAccess {
         }
     }
 
+    @Override
+    public void writeBytes(byte[] b, int off, int len) throws UncheckedIOException {
+        try {
+            buffer.put(b, off, len);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
     @Override
     public RandomAccess openNewSession(boolean readOnly) {
         return this;
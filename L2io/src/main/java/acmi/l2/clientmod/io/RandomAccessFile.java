@@ -131,6 +131,15 @@ public class RandomAccessFile implements RandomAccess {
         }
     }
 
+    @Override
+    public int length() throws UncheckedIOException {
+        try {
+            return Math.toIntExact(file.length() - startOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public void trimToPosition() throws UncheckedIOException {
         try {
@@ -66,6 +66,11 @@ public class RandomAccessMemory implements RandomAccess {
         buffer.position(position);
     }
 
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
     @Override
     public void trimToPosition() {
         buffer.limit(buffer.position());
@@ -21,16 +21,18 @@
  */
 package acmi.l2.clientmod.io;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.security.AccessControlException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -59,6 +61,21 @@ public class UnrealPackage implements AutoCloseable {
         UnrealPackage.defaultCharset = defaultCharset;
     }
 
+    /**
+     * When enabled, name, import and export tables of large packages are decoded concurrently after being read in bulk.
+     */
+    private static final boolean PARALLEL_HEADER_PARSE = Boolean.parseBoolean(System.getProperty("UnrealPackage.parallelHeaderParse", "true"));
+
+    public static boolean isParallelHeaderParse() {
+        return PARALLEL_HEADER_PARSE;
+    }
+
+    private static final int PARALLEL_HEADER_PARSE_THRESHOLD = 0x1000;
+
+    private static final int MAX_IMPORT_ENTRY_SIZE = 5 + 5 + 4 + 5;
+    private static final int MAX_EXPORT_ENTRY_SIZE = 5 + 5 + 4 + 5 + 4 + 5 + 5;
+    private static final int NAME_ENTRY_SIZE_ESTIMATE = 24;
+
     public static final int UNREAL_PACKAGE_MAGIC = 0x9E2A83C1;
 
     public static final int VERSION_OFFSET = 0x04;
@@ -118,9 +135,7 @@ public class UnrealPackage implements AutoCloseable {
         license = file.readUnsignedShort();
         flags = file.readInt();
 
-        readNameTable();
-        readImportTable();
-        readExportTable();
+        readTables();
 
         file.setPosition(GUID_OFFSET);
         byte[] uuidBytes = new byte[16];
@@ -217,16 +232,9 @@ public class UnrealPackage implements AutoCloseable {
     }
 
     protected void readNameTable() throws UncheckedIOException {
-        file.setPosition(NAME_COUNT_OFFSET);
-        int count = file.readInt();
-        file.setPosition(getNameTableOffset());
-
-        List<NameEntry> tmp = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) {
-            tmp.add(new NameEntry(this, i, file.readLine(), file.readInt()));
-        }
-
-        names = Collections.unmodifiableList(tmp);
+        names = decodeNameTable(readNameTableRegion());
+        invalidateNames(imports);
+        invalidateNames(exports);
     }
 
     public List<ExportEntry> getExportTable() {
@@ -234,23 +242,7 @@ public class UnrealPackage implements AutoCloseable {
     }
 
     protected void readExportTable() throws UncheckedIOException {
-        file.setPosition(EXPORT_COUNT_OFFSET);
-        int count = file.readInt();
-        file.setPosition(getExportTableOffset());
-
-        List<ExportEntry> tmp = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) {
-            tmp.add(new ExportEntry(this, i,
-                    file.readCompactInt(),
-                    file.readCompactInt(),
-                    file.readInt(),
-                    file.readCompactInt(),
-                    file.readInt(),
-                    file.readCompactInt(),
-                    file.readCompactInt()));
-        }
-
-        exports = Collections.unmodifiableList(tmp);
+        exports = decodeExportTable(readExportTableRegion());
     }
 
     public List<ImportEntry> getImportTable() {
@@ -258,20 +250,283 @@ public class UnrealPackage implements AutoCloseable {
     }
 
     protected void readImportTable() throws UncheckedIOException {
+        imports = decodeImportTable(readImportTableRegion());
+        invalidateNames(exports);
+    }
+
+    private static void invalidateNames(List<? extends Entry> table) {
+        if (table instanceof ImportTable) {
+            ((ImportTable) table).invalidateNames();
+        } else if (table instanceof ExportTable) {
+            ((ExportTable) table).invalidateNames();
+        }
+    }
+
+    /**
+     * Reads each table region with a single bulk read and decodes the three tables,
+     * concurrently for large packages.
+     */
+    protected void readTables() throws UncheckedIOException {
+        readTables(PARALLEL_HEADER_PARSE);
+    }
+
+    void readTables(boolean parallel) throws UncheckedIOException {
+        TableRegion nameRegion = readNameTableRegion();
+        TableRegion importRegion = readImportTableRegion();
+        TableRegion exportRegion = readExportTableRegion();
+
+        if (!parallel ||
+                nameRegion.count + importRegion.count + exportRegion.count < PARALLEL_HEADER_PARSE_THRESHOLD) {
+            names = decodeNameTable(nameRegion);
+            imports = decodeImportTable(importRegion);
+            exports = decodeExportTable(exportRegion);
+            return;
+        }
+
+        CompletableFuture<List<NameEntry>> nameTable = CompletableFuture.supplyAsync(() -> decodeNameTable(nameRegion));
+        CompletableFuture<List<ImportEntry>> importTable = CompletableFuture.supplyAsync(() -> decodeImportTable(importRegion));
+        List<ExportEntry> exportTable = decodeExportTable(exportRegion);
+        try {
+            names = nameTable.join();
+            imports = importTable.join();
+            exports = exportTable;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    protected TableRegion readNameTableRegion() throws UncheckedIOException {
+        file.setPosition(NAME_COUNT_OFFSET);
+        int count = file.readInt();
+        int offset = getNameTableOffset();
+        int limit = getTableRegionLimit(offset);
+
+        int length = (int) Math.min((long) count * NAME_ENTRY_SIZE_ESTIMATE, limit - offset);
+        byte[] data = readRegion(offset, length);
+        int end;
+        while ((end = nameTableEnd(data, count)) < 0) {
+            if (data.length >= limit - offset) {
+                throw new UncheckedIOException(new EOFException("Name table exceeds file bounds"));
+            }
+            data = readRegion(offset, (int) Math.min(2L * Math.max(data.length, 1), limit - offset));
+        }
+        return new TableRegion(count, end == data.length ? data : Arrays.copyOf(data, end));
+    }
+
+    protected TableRegion readImportTableRegion() throws UncheckedIOException {
         file.setPosition(IMPORT_COUNT_OFFSET);
         int count = file.readInt();
-        file.setPosition(getImportTableOffset());
+        int offset = getImportTableOffset();
+        int length = (int) Math.min((long) count * MAX_IMPORT_ENTRY_SIZE, getTableRegionLimit(offset) - offset);
+        return new TableRegion(count, readRegion(offset, length));
+    }
 
-        List<ImportEntry> tmp = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) {
-            tmp.add(new ImportEntry(this, i,
-                    file.readCompactInt(),
-                    file.readCompactInt(),
-                    file.readInt(),
-                    file.readCompactInt()));
+    protected TableRegion readExportTableRegion() throws UncheckedIOException {
+        file.setPosition(EXPORT_COUNT_OFFSET);
+        int count = file.readInt();
+        int offset = getExportTableOffset();
+        int length = (int) Math.min((long) count * MAX_EXPORT_ENTRY_SIZE, getTableRegionLimit(offset) - offset);
+        return new TableRegion(count, readRegion(offset, length));
+    }
+
+    private int getTableRegionLimit(int offset) throws UncheckedIOException {
+        int limit = file.length();
+        for (int tableOffset : new int[]{getNameTableOffset(), getImportTableOffset(), getExportTableOffset()}) {
+            if (tableOffset > offset && tableOffset < limit) {
+                limit = tableOffset;
+            }
+        }
+        return limit;
+    }
+
+    private byte[] readRegion(int offset, int length) throws UncheckedIOException {
+        byte[] data = new byte[Math.max(length, 0)];
+        file.setPosition(offset);
+        file.readFully(data);
+        return data;
+    }
+
+    /**
+     * @return end of name table in {@code data} or -1 if data is too short
+     */
+    private static int nameTableEnd(byte[] data, int count) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            for (int i = 0; i < count; i++) {
+                long len = ByteUtil.compactIntFromBytes(() -> buffer.get() & 0xff);
+                long entrySize = (len > 0 ? len : -2 * len) + 4;
+                if (entrySize > buffer.remaining()) {
+                    return -1;
+                }
+                buffer.position(buffer.position() + (int) entrySize);
+            }
+        } catch (BufferUnderflowException e) {
+            return -1;
+        }
+        return buffer.position();
+    }
+
+    protected List<NameEntry> decodeNameTable(TableRegion region) throws UncheckedIOException {
+        DataInput input = region.input(file.getCharset());
+        List<NameEntry> tmp = new ArrayList<>(region.count);
+        for (int i = 0; i < region.count; i++) {
+            tmp.add(new NameEntry(this, i, input.readLine(), input.readInt()));
+        }
+        return Collections.unmodifiableList(tmp);
+    }
+
+    protected List<ImportEntry> decodeImportTable(TableRegion region) throws UncheckedIOException {
+        DataInput input = region.input(file.getCharset());
+        ImportTable table = new ImportTable(this, region.count);
+        for (int i = 0; i < region.count; i++) {
+            table.classPackage[i] = input.readCompactInt();
+            table.className[i] = input.readCompactInt();
+            table.objectPackage[i] = input.readInt();
+            table.objectName[i] = input.readCompactInt();
+        }
+        return table;
+    }
+
+    protected List<ExportEntry> decodeExportTable(TableRegion region) throws UncheckedIOException {
+        DataInput input = region.input(file.getCharset());
+        ExportTable table = new ExportTable(this, region.count);
+        for (int i = 0; i < region.count; i++) {
+            table.objectClass[i] = input.readCompactInt();
+            table.objectSuperClass[i] = input.readCompactInt();
+            table.objectPackage[i] = input.readInt();
+            table.objectName[i] = input.readCompactInt();
+            table.objectFlags[i] = input.readInt();
+            table.size[i] = input.readCompactInt();
+            table.offset[i] = input.readCompactInt();
+        }
+        return table;
+    }
+
+    protected static final class TableRegion {
+        private final int count;
+        private final byte[] data;
+
+        TableRegion(int count, byte[] data) {
+            this.count = count;
+            this.data = data;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        DataInput input(Charset charset) {
+            return DataInput.dataInput(ByteBuffer.wrap(data), charset);
+        }
+    }
+
+    private static final class ImportTable extends AbstractList<ImportEntry> implements java.util.RandomAccess {
+        private final UnrealPackage unrealPackage;
+        private final int[] classPackage;
+        private final int[] className;
+        private final int[] objectPackage;
+        private final int[] objectName;
+
+        private volatile String[] innerNames;
+        private volatile String[] fullClassNames;
+
+        ImportTable(UnrealPackage unrealPackage, int count) {
+            this.unrealPackage = unrealPackage;
+            this.classPackage = new int[count];
+            this.className = new int[count];
+            this.objectPackage = new int[count];
+            this.objectName = new int[count];
+        }
+
+        @Override
+        public ImportEntry get(int index) {
+            return new ImportEntry(this, index, index);
+        }
+
+        @Override
+        public int size() {
+            return objectName.length;
+        }
+
+        String[] innerNames() {
+            String[] cache = innerNames;
+            if (cache == null) {
+                innerNames = cache = new String[size()];
+            }
+            return cache;
+        }
+
+        String[] fullClassNames() {
+            String[] cache = fullClassNames;
+            if (cache == null) {
+                fullClassNames = cache = new String[size()];
+            }
+            return cache;
         }
 
-        imports = Collections.unmodifiableList(tmp);
+        void invalidateNames() {
+            innerNames = null;
+            fullClassNames = null;
+        }
+    }
+
+    private static final class ExportTable extends AbstractList<ExportEntry> implements java.util.RandomAccess {
+        private final UnrealPackage unrealPackage;
+        private final int[] objectClass;
+        private final int[] objectSuperClass;
+        private final int[] objectPackage;
+        private final int[] objectName;
+        private final int[] objectFlags;
+        private final int[] size;
+        private final int[] offset;
+
+        private volatile String[] innerNames;
+        private volatile String[] fullNames;
+
+        ExportTable(UnrealPackage unrealPackage, int count) {
+            this.unrealPackage = unrealPackage;
+            this.objectClass = new int[count];
+            this.objectSuperClass = new int[count];
+            this.objectPackage = new int[count];
+            this.objectName = new int[count];
+            this.objectFlags = new int[count];
+            this.size = new int[count];
+            this.offset = new int[count];
+        }
+
+        @Override
+        public ExportEntry get(int index) {
+            return new ExportEntry(this, index, index);
+        }
+
+        @Override
+        public int size() {
+            return objectName.length;
+        }
+
+        String[] innerNames() {
+            String[] cache = innerNames;
+            if (cache == null) {
+                innerNames = cache = new String[size()];
+            }
+            return cache;
+        }
+
+        String[] fullNames() {
+            String[] cache = fullNames;
+            if (cache == null) {
+                fullNames = cache = new String[size()];
+            }
+            return cache;
+        }
+
+        void invalidateNames() {
+            innerNames = null;
+            fullNames = null;
+        }
     }
 
     @Deprecated
@@ -454,8 +709,8 @@ public class UnrealPackage implements AutoCloseable {
     protected void writeImportTable(List<ImportEntry> importTable) throws UncheckedIOException {
         RandomAccessMemory buffer = new RandomAccessMemory(null, file.getCharset());
         for (ImportEntry entry : importTable) {
-            buffer.writeCompactInt(entry.classPackage);
-            buffer.writeCompactInt(entry.className);
+            buffer.writeCompactInt(entry.classPackageRef());
+            buffer.writeCompactInt(entry.classNameRef());
             buffer.writeInt(entry.objectPackage);
             buffer.writeCompactInt(entry.objectName);
         }
@@ -466,13 +721,13 @@ public class UnrealPackage implements AutoCloseable {
     protected void writeExportTable(List<ExportEntry> exportTable) throws UncheckedIOException {
         RandomAccessMemory buffer = new RandomAccessMemory(null, file.getCharset());
         for (ExportEntry entry : exportTable) {
-            buffer.writeCompactInt(entry.objectClass);
-            buffer.writeCompactInt(entry.objectSuperClass);
+            buffer.writeCompactInt(entry.objectClassRef());
+            buffer.writeCompactInt(entry.objectSuperClassRef());
             buffer.writeInt(entry.objectPackage);
             buffer.writeCompactInt(entry.objectName);
-            buffer.writeInt(entry.objectFlags);
-            buffer.writeCompactInt(entry.size);
-            buffer.writeCompactInt(entry.offset);
+            buffer.writeInt(entry.getObjectFlags());
+            buffer.writeCompactInt(entry.getSize());
+            buffer.writeCompactInt(entry.getOffset());
         }
         buffer.trimToPosition();
         buffer.writeTo(file);
@@ -588,8 +843,8 @@ public class UnrealPackage implements AutoCloseable {
                     UnrealPackage.ImportEntry toFind = importEntry;
                     if ((pckg = indexIf(importTable, ie -> toFind.objectPackage == ie.objectPackage &&
                             toFind.objectName == ie.objectName &&
-                            toFind.classPackage == ie.classPackage &&
-                            toFind.className == ie.className)) == -1) {
+                            toFind.classPackageRef() == ie.classPackageRef() &&
+                            toFind.classNameRef() == ie.classNameRef())) == -1) {
                         importTable.add(importEntry);
                         pckg = importTable.size() - 1;
                     }
@@ -604,8 +859,8 @@ public class UnrealPackage implements AutoCloseable {
                 UnrealPackage.ImportEntry toFind = importEntry;
                 if (indexIf(importTable, ie -> toFind.objectPackage == ie.objectPackage &&
                         toFind.objectName == ie.objectName &&
-                        toFind.classPackage == ie.classPackage &&
-                        toFind.className == ie.className) == -1) {
+                        toFind.classPackageRef() == ie.classPackageRef() &&
+                        toFind.classNameRef() == ie.classNameRef()) == -1) {
                     importTable.add(importEntry);
                 }
             }
@@ -632,8 +887,8 @@ public class UnrealPackage implements AutoCloseable {
 
         updateImportTable(importTable -> {
             UnrealPackage.ImportEntry entry = importTable.get(index);
-            entry.classPackage = nameReference(clazz[0]);
-            entry.className = nameReference(clazz[1]);
+            entry.setClassPackage(nameReference(clazz[0]));
+            entry.setClassName(nameReference(clazz[1]));
         });
     }
 
@@ -695,8 +950,8 @@ public class UnrealPackage implements AutoCloseable {
             UnrealPackage.ExportEntry toFind = exportEntry;
             if (indexIf(exportTable, ee -> ee.objectPackage == toFind.objectPackage &&
                     ee.objectName == toFind.objectName &&
-                    ee.objectClass == toFind.objectClass &&
-                    ee.objectSuperClass == toFind.objectSuperClass) == -1) {
+                    ee.objectClassRef() == toFind.objectClassRef() &&
+                    ee.objectSuperClassRef() == toFind.objectSuperClassRef()) == -1) {
                 exportTable.add(exportEntry);
                 file.writeBytes(data);
             }
@@ -741,13 +996,13 @@ public class UnrealPackage implements AutoCloseable {
             ExportEntry oldEntry = exportTable.remove(index);
             exportTable.add(index, new ExportEntry(this,
                     0,
-                    oldEntry.objectClass,
-                    oldEntry.objectSuperClass,
+                    oldEntry.objectClassRef(),
+                    oldEntry.objectSuperClassRef(),
                     pckg,
                     nameReference(namePath[namePath.length - 1]),
-                    oldEntry.objectFlags,
-                    oldEntry.offset,
-                    oldEntry.size
+                    oldEntry.getObjectFlags(),
+                    oldEntry.getOffset(),
+                    oldEntry.getSize()
             ));
         });
     }
@@ -762,9 +1017,9 @@ public class UnrealPackage implements AutoCloseable {
 
         updateExportTable(exportTable -> {
             ExportEntry entry = exportTable.get(index);
-            entry.objectClass = pckgInd;
-            entry.objectSuperClass = 0;
-            entry.objectFlags = ObjectFlag.getFlags(Public, LoadForClient, LoadForServer, LoadForEdit);
+            entry.setObjectClass(pckgInd);
+            entry.setObjectSuperClass(0);
+            entry.setObjectFlags(ObjectFlag.getFlags(Public, LoadForClient, LoadForServer, LoadForEdit));
             entry.setObjectRawData(pckgData, false);
 
             file.setPosition(getDataEndOffset().orElseThrow(IllegalStateException::new));
@@ -901,8 +1156,6 @@ public class UnrealPackage implements AutoCloseable {
         protected final int objectPackage;
         protected final int objectName;
 
-        private Reference<String> innerName = new SoftReference<>(null);
-
         protected Entry(UnrealPackage unrealPackage, int index, int objectPackage, int objectName) {
             super(unrealPackage, index);
             this.objectPackage = objectPackage;
@@ -918,13 +1171,8 @@ public class UnrealPackage implements AutoCloseable {
         }
 
         public String getObjectInnerFullName() {
-            String str = innerName.get();
-            if (str == null) {
-                Entry pckg = getObjectPackage();
-                str = pckg == null ? getObjectName().getName() : pckg.getObjectInnerFullName() + '.' + getObjectName().getName();
-                innerName = new SoftReference<>(str);
-            }
-            return str;
+            Entry pckg = getObjectPackage();
+            return pckg == null ? getObjectName().getName() : pckg.getObjectInnerFullName() + '.' + getObjectName().getName();
         }
 
         public String getObjectFullName() {
@@ -971,21 +1219,49 @@ public class UnrealPackage implements AutoCloseable {
             }
         }
 
-        private int objectClass;
-        private int objectSuperClass;
-        private int objectFlags;
-        private int size;
-        private int offset;
-
-        private Reference<String> fullName = new SoftReference<>(null);
+        private final ExportTable table;
+        private final int row;
 
         public ExportEntry(UnrealPackage unrealPackage, int index, int objectClass, int objectSuperClass, int objectPackage, int objectName, int objectFlags, int size, int offset) {
-            super(unrealPackage, index, objectPackage, objectName);
-            this.objectClass = objectClass;
-            this.objectSuperClass = objectSuperClass;
-            this.objectFlags = objectFlags;
-            this.size = size;
-            this.offset = offset;
+            this(singleRow(unrealPackage, objectClass, objectSuperClass, objectPackage, objectName, objectFlags, size, offset), 0, index);
+        }
+
+        private static ExportTable singleRow(UnrealPackage unrealPackage, int objectClass, int objectSuperClass, int objectPackage, int objectName, int objectFlags, int size, int offset) {
+            ExportTable table = new ExportTable(unrealPackage, 1);
+            table.objectClass[0] = objectClass;
+            table.objectSuperClass[0] = objectSuperClass;
+            table.objectPackage[0] = objectPackage;
+            table.objectName[0] = objectName;
+            table.objectFlags[0] = objectFlags;
+            table.size[0] = size;
+            table.offset[0] = offset;
+            return table;
+        }
+
+        private ExportEntry(ExportTable table, int row, int index) {
+            super(table.unrealPackage, index, table.objectPackage[row], table.objectName[row]);
+            this.table = table;
+            this.row = row;
+        }
+
+        private int objectClassRef() {
+            return table.objectClass[row];
+        }
+
+        private void setObjectClass(int objectClass) {
+            table.objectClass[row] = objectClass;
+        }
+
+        private int objectSuperClassRef() {
+            return table.objectSuperClass[row];
+        }
+
+        private void setObjectSuperClass(int objectSuperClass) {
+            table.objectSuperClass[row] = objectSuperClass;
+        }
+
+        private void setObjectFlags(int objectFlags) {
+            table.objectFlags[row] = objectFlags;
         }
 
         @Override
@@ -994,11 +1270,11 @@ public class UnrealPackage implements AutoCloseable {
         }
 
         public Entry getObjectClass() {
-            return getUnrealPackage().objectReference(objectClass);
+            return getUnrealPackage().objectReference(objectClassRef());
         }
 
         public Entry getObjectSuperClass() {
-            return getUnrealPackage().objectReference(objectSuperClass);
+            return getUnrealPackage().objectReference(objectSuperClassRef());
         }
 
         @Override
@@ -1007,15 +1283,15 @@ public class UnrealPackage implements AutoCloseable {
         }
 
         public int getObjectFlags() {
-            return objectFlags;
+            return table.objectFlags[row];
         }
 
         public int getSize() {
-            return size;
+            return table.size[row];
         }
 
         public int getOffset() {
-            return offset;
+            return table.offset[row];
         }
 
         public byte[] getObjectRawData() throws UncheckedIOException {
@@ -1023,8 +1299,8 @@ public class UnrealPackage implements AutoCloseable {
                 return new byte[0];
             }
 
-            byte[] raw = new byte[size];
-            getUnrealPackage().file.setPosition(offset);
+            byte[] raw = new byte[getSize()];
+            getUnrealPackage().file.setPosition(getOffset());
             getUnrealPackage().file.readFully(raw);
             return raw;
         }
@@ -1047,11 +1323,19 @@ public class UnrealPackage implements AutoCloseable {
         }
 
         public void setObjectRawData(byte[] data, boolean writeExportTable) throws UncheckedIOException {
-            if (data.length <= getSize()) {
+            setObjectRawData(data.length, output -> output.writeBytes(data), writeExportTable);
+        }
+
+        /**
+         * Places {@code size} bytes of object data before any of them are produced,
+         * then lets {@code writer} write them straight into the package file.
+         */
+        public void setObjectRawData(int size, Consumer<? super DataOutput> writer, boolean writeExportTable) throws UncheckedIOException {
+            if (size <= getSize()) {
                 getUnrealPackage().file.setPosition(getOffset());
-                getUnrealPackage().file.writeBytes(data);
-                if (data.length != getSize()) {
-                    size = data.length;
+                writeObjectRawData(size, writer);
+                if (size != getSize()) {
+                    table.size[row] = size;
 
                     if (writeExportTable) {
                         getUnrealPackage().file.setPosition(getUnrealPackage().getExportTableOffset());
@@ -1069,13 +1353,13 @@ public class UnrealPackage implements AutoCloseable {
                         .filter(entry -> entry.getSize() > 0)
                         .mapToInt(ExportEntry::getOffset)
                         .max()
-                        .orElseThrow(IllegalStateException::new) == offset;
-                int newOffset = isLast ? offset :
-                        findPositionForNewExportEntryData(getUnrealPackage().getExportTable(), data.length).orElseThrow(IllegalStateException::new);
+                        .orElseThrow(IllegalStateException::new) == getOffset();
+                int newOffset = isLast ? getOffset() :
+                        findPositionForNewExportEntryData(getUnrealPackage().getExportTable(), size).orElseThrow(IllegalStateException::new);
                 getUnrealPackage().file.setPosition(newOffset);
-                offset = getUnrealPackage().file.getPosition();
-                size = data.length;
-                getUnrealPackage().file.writeBytes(data);
+                table.offset[row] = getUnrealPackage().file.getPosition();
+                table.size[row] = size;
+                writeObjectRawData(size, writer);
 
                 getUnrealPackage().file.setPosition(getUnrealPackage().getDataEndOffset().orElseThrow(IllegalStateException::new));
                 int nameTablePosition = getUnrealPackage().file.getPosition();
@@ -1094,12 +1378,31 @@ public class UnrealPackage implements AutoCloseable {
             }
         }
 
+        private void writeObjectRawData(int size, Consumer<? super DataOutput> writer) throws UncheckedIOException {
+            int start = getUnrealPackage().file.getPosition();
+            writer.accept(getUnrealPackage().file);
+            int written = getUnrealPackage().file.getPosition() - start;
+            if (written != size) {
+                throw new IllegalStateException("Object data size mismatch: expected " + size + ", written " + written);
+            }
+        }
+
+        @Override
+        public String getObjectInnerFullName() {
+            String[] cache = table.innerNames();
+            String str = cache[row];
+            if (str == null) {
+                cache[row] = str = super.getObjectInnerFullName();
+            }
+            return str;
+        }
+
         @Override
         public String getObjectFullName() {
-            String str = fullName.get();
+            String[] cache = table.fullNames();
+            String str = cache[row];
             if (str == null) {
-                str = getUnrealPackage().getPackageName() + "." + getObjectInnerFullName();
-                fullName = new SoftReference<>(str);
+                cache[row] = str = getUnrealPackage().getPackageName() + "." + getObjectInnerFullName();
             }
             return str;
         }
@@ -1116,15 +1419,44 @@ public class UnrealPackage implements AutoCloseable {
     }
 
     public static final class ImportEntry extends Entry<ImportEntry> {
-        private int classPackage;
-        private int className;
-
-        private Reference<String> fullClassName = new SoftReference<>(null);
+        private final ImportTable table;
+        private final int row;
 
         public ImportEntry(UnrealPackage unrealPackage, int index, int classPackage, int className, int objectPackage, int objectName) {
-            super(unrealPackage, index, objectPackage, objectName);
-            this.classPackage = classPackage;
-            this.className = className;
+            this(singleRow(unrealPackage, classPackage, className, objectPackage, objectName), 0, index);
+        }
+
+        private static ImportTable singleRow(UnrealPackage unrealPackage, int classPackage, int className, int objectPackage, int objectName) {
+            ImportTable table = new ImportTable(unrealPackage, 1);
+            table.classPackage[0] = classPackage;
+            table.className[0] = className;
+            table.objectPackage[0] = objectPackage;
+            table.objectName[0] = objectName;
+            return table;
+        }
+
+        private ImportEntry(ImportTable table, int row, int index) {
+            super(table.unrealPackage, index, table.objectPackage[row], table.objectName[row]);
+            this.table = table;
+            this.row = row;
+        }
+
+        private int classPackageRef() {
+            return table.classPackage[row];
+        }
+
+        private void setClassPackage(int classPackage) {
+            table.classPackage[row] = classPackage;
+            table.fullClassNames()[row] = null;
+        }
+
+        private int classNameRef() {
+            return table.className[row];
+        }
+
+        private void setClassName(int className) {
+            table.className[row] = className;
+            table.fullClassNames()[row] = null;
         }
 
         @Override
@@ -1133,20 +1465,30 @@ public class UnrealPackage implements AutoCloseable {
         }
 
         public NameEntry getClassPackage() {
-            return getUnrealPackage().getNameTable().get(classPackage);
+            return getUnrealPackage().getNameTable().get(classPackageRef());
         }
 
         public NameEntry getClassName() {
-            return getUnrealPackage().getNameTable().get(className);
+            return getUnrealPackage().getNameTable().get(classNameRef());
+        }
+
+        @Override
+        public String getObjectInnerFullName() {
+            String[] cache = table.innerNames();
+            String str = cache[row];
+            if (str == null) {
+                cache[row] = str = super.getObjectInnerFullName();
+            }
+            return str;
         }
 
         @Override
         public String getFullClassName() {
-            String str = fullClassName.get();
+            String[] cache = table.fullClassNames();
+            String str = cache[row];
             if (str == null) {
                 NameEntry pckg = getClassPackage();
-                str = pckg == null ? getClassName().getName() : pckg.getName() + '.' + getClassName().getName();
-                fullClassName = new SoftReference<>(str);
+                cache[row] = str = pckg == null ? getClassName().getName() : pckg.getName() + '.' + getClassName().getName();
             }
             return str;
         }
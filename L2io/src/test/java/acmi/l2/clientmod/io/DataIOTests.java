@@ -163,4 +163,56 @@ public class DataIOTests {
         buffer.flip();
         assertArrayEquals(array, DataInput.dataInput(buffer, null).readByteArray());
     }
+
+    @Test
+    public void bulkArrays() {
+        int count = 0x1234;
+        short[] shorts = new short[count];
+        int[] ints = new int[count];
+        long[] longs = new long[count];
+        float[] floats = new float[count];
+        for (int i = 0; i < count; i++) {
+            shorts[i] = (short) (i * 31);
+            ints[i] = i * 0x10001 - 7;
+            longs[i] = (long) i << 40 | i;
+            floats[i] = i / 3f;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * 18);
+        DataOutput output = DataOutput.dataOutput(buffer, null);
+        output.writeShorts(shorts, 0, count);
+        output.writeInts(ints, 0, count);
+        output.writeLongs(longs, 0, count);
+        output.writeFloats(floats, 0, count);
+        buffer.flip();
+
+        DataInput input = DataInput.dataInput(buffer, null);
+        for (int i = 0; i < count; i++) {
+            assertEquals(shorts[i], (short) input.readUnsignedShort());
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(ints[i], input.readInt());
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(longs[i], input.readLong());
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(floats[i], input.readFloat(), 0f);
+        }
+
+        buffer.rewind();
+        input = DataInput.dataInput(buffer, null);
+        short[] shorts2 = new short[count];
+        int[] ints2 = new int[count];
+        long[] longs2 = new long[count];
+        float[] floats2 = new float[count];
+        input.readShorts(shorts2, 0, count);
+        input.readInts(ints2, 0, count);
+        input.readLongs(longs2, 0, count);
+        input.readFloats(floats2, 0, count);
+        assertArrayEquals(shorts, shorts2);
+        assertArrayEquals(ints, ints2);
+        assertArrayEquals(longs, longs2);
+        assertArrayEquals(floats, floats2, 0f);
+    }
 }
@@ -24,8 +24,12 @@ package acmi.l2.clientmod.io;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 public class UnrealPackageTests {
     private static UnrealPackage createTestPackage() {
@@ -126,4 +130,136 @@ public class UnrealPackageTests {
             assertEquals("Core.Package", entry.getFullClassName());
         }
     }
+
+    @Test
+    public void writeObjectRawData() {
+        try (UnrealPackage up = createTestPackage()) {
+            up.addExportEntry("test.texture", "Engine.Texture", null, new byte[5], 0);
+            up.addExportEntry("test.texture2", "Engine.Texture", null, new byte[5], 0);
+            UnrealPackage.ExportEntry entry = up.getExportTable().get(up.getExportTable().size() - 2);
+
+            entry.setObjectRawData(3, output -> output.writeBytes(new byte[]{1, 2, 3}), true);
+            assertArrayEquals(new byte[]{1, 2, 3}, entry.getObjectRawData());
+
+            entry.setObjectRawData(8, output -> output.writeLong(0x0102030405060708L), true);
+            assertEquals(8, entry.getSize());
+            assertArrayEquals(new byte[]{8, 7, 6, 5, 4, 3, 2, 1}, entry.getObjectRawData());
+        }
+    }
+
+    @Test
+    public void exportEntryViews() {
+        try (UnrealPackage up = createTestPackage()) {
+            up.addExportEntry("test.texture", "Engine.Texture", null, new byte[5], 0);
+            int index = up.getExportTable().size() - 1;
+            UnrealPackage.ExportEntry entry = up.getExportTable().get(index);
+            UnrealPackage.ExportEntry other = up.getExportTable().get(index);
+
+            assertNotSame(entry, other);
+            assertEquals(entry, other);
+            assertEquals(entry.hashCode(), other.hashCode());
+
+            entry.setObjectRawData(new byte[3], false);
+            assertEquals(3, up.getExportTable().get(index).getSize());
+            assertEquals(3, other.getSize());
+        }
+    }
+
+    @Test
+    public void singleRowEntries() {
+        try (UnrealPackage up = createTestPackage()) {
+            up.addExportEntry("test.texture", "Engine.Texture", null, new byte[5], 0x40);
+
+            UnrealPackage.ExportEntry export = up.getExportTable().get(up.getExportTable().size() - 1);
+            UnrealPackage.ExportEntry exportCopy = new UnrealPackage.ExportEntry(up, export.getIndex(),
+                    export.getObjectClass().getObjectReference(), 0,
+                    export.getObjectPackage().getObjectReference(), export.getObjectName().getIndex(),
+                    export.getObjectFlags(), export.getSize(), export.getOffset());
+            assertEquals(export, exportCopy);
+            assertEquals(export.hashCode(), exportCopy.hashCode());
+            assertEquals(export.getObjectReference(), exportCopy.getObjectReference());
+            assertEquals("Engine.Texture", exportCopy.getFullClassName());
+            assertEquals(0x40, exportCopy.getObjectFlags());
+            assertEquals(5, exportCopy.getSize());
+            assertEquals(export.getOffset(), exportCopy.getOffset());
+
+            UnrealPackage.ImportEntry imp = up.getImportTable().get(-export.getObjectClass().getObjectReference() - 1);
+            UnrealPackage.ImportEntry importCopy = new UnrealPackage.ImportEntry(up, imp.getIndex(),
+                    imp.getClassPackage().getIndex(), imp.getClassName().getIndex(),
+                    imp.getObjectPackage().getObjectReference(), imp.getObjectName().getIndex());
+            assertEquals(imp, importCopy);
+            assertEquals(imp.hashCode(), importCopy.hashCode());
+            assertEquals(imp.getObjectReference(), importCopy.getObjectReference());
+            assertEquals("Engine.Texture", importCopy.getObjectFullName());
+            assertEquals("Core.Class", importCopy.getFullClassName());
+        }
+    }
+
+    @Test
+    public void fullNamesInvalidation() {
+        try (UnrealPackage up = createTestPackage()) {
+            up.addExportEntry("test.image", "Engine.Texture", null, new byte[5], 0);
+            int exportIndex = up.getExportTable().size() - 1;
+            int importIndex = -up.importReferenceByName("Engine.Texture", c -> c.equalsIgnoreCase("Core.Class")) - 1;
+            String packageName = up.getPackageName();
+            assertEquals(packageName + ".test.image", up.getExportTable().get(exportIndex).getObjectFullName());
+            assertEquals("Engine.Texture", up.getImportTable().get(importIndex).getObjectFullName());
+
+            up.updateNameEntry(up.nameReference("image"), "picture", 0);
+            up.updateNameEntry(up.nameReference("Texture"), "Material", 0);
+            assertEquals(packageName + ".test.picture", up.getExportTable().get(exportIndex).getObjectFullName());
+            assertEquals("Engine.Material", up.getImportTable().get(importIndex).getObjectFullName());
+            assertEquals("Engine.Material", up.getExportTable().get(exportIndex).getFullClassName());
+
+            up.addImportEntries(Collections.singletonMap("Engine.Actor", "Core.Class"));
+            up.addNameEntries(Collections.singletonMap("Pawn", 0));
+            int actor = up.importReferenceByName("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class"));
+            up.updateExportTable(exportTable -> exportTable.add(
+                    new UnrealPackage.ExportEntry(up, 0, 0, 0, actor, up.nameReference("picture"), 0, 0, 0)));
+            int inner = up.getExportTable().size() - 1;
+            assertEquals(packageName + ".Engine.Actor.picture", up.getExportTable().get(inner).getObjectFullName());
+
+            up.updateImportTable(importTable -> {
+                UnrealPackage.ImportEntry old = importTable.get(-actor - 1);
+                importTable.set(-actor - 1, new UnrealPackage.ImportEntry(up, 0,
+                        old.getClassPackage().getIndex(), old.getClassName().getIndex(),
+                        old.getObjectPackage().getObjectReference(), up.nameReference("Pawn")));
+            });
+            assertEquals(packageName + ".Engine.Pawn.picture", up.getExportTable().get(inner).getObjectFullName());
+        }
+    }
+
+    @Test
+    public void parallelHeaderParse() {
+        RandomAccessMemory memory = new RandomAccessMemory("test", UnrealPackage.getDefaultCharset());
+        try (UnrealPackage up = UnrealPackage.create(memory, 127, 32)) {
+            Map<String, Integer> names = new LinkedHashMap<>();
+            for (int i = 0; i < 5000; i++) {
+                names.put("name_entry_" + i, i);
+            }
+            up.addNameEntries(names);
+            up.addImportEntries(Collections.singletonMap("Engine.Actor", "Core.Class"));
+            up.addExportEntry("test.image", "Engine.Texture", null, new byte[5], 0);
+
+            UnrealPackage sequential = new UnrealPackage(memory) {
+                @Override
+                protected void readTables() {
+                    readTables(false);
+                }
+            };
+            UnrealPackage concurrent = new UnrealPackage(memory) {
+                @Override
+                protected void readTables() {
+                    readTables(true);
+                }
+            };
+
+            assertEquals(sequential.getNameTable(), concurrent.getNameTable());
+            assertEquals(sequential.getImportTable(), concurrent.getImportTable());
+            assertEquals(sequential.getExportTable(), concurrent.getExportTable());
+            assertEquals(up.getNameTable().size(), concurrent.getNameTable().size());
+            assertEquals(123, concurrent.getNameTable().get(concurrent.nameReference("name_entry_123")).getFlags());
+            assertEquals("test.image", concurrent.getExportTable().get(concurrent.getExportTable().size() - 1).getObjectInnerFullName());
+        }
+    }
 }
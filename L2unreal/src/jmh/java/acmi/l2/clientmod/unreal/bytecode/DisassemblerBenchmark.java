@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.bytecode;
+
+import acmi.l2.clientmod.io.UnrealPackage;
+import acmi.l2.clientmod.unreal.Environment;
+import acmi.l2.clientmod.unreal.UnrealRuntimeContext;
+import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
+import acmi.l2.clientmod.unreal.core.Struct;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytecode and script text dump of a bundled package with a fresh factory per invocation:
+ * serial {@code getOrCreateObject} per export against {@link Disassembler}.
+ * Run with {@code ant benchmark}, the working directory must be the L2unreal module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DisassemblerBenchmark {
+    @Param({"Core.u", "Engine.u"})
+    public String file;
+
+    @Param("src/test/resources/system")
+    public String systemDir;
+
+    private Environment environment;
+    private UnrealPackage unrealPackage;
+    private UnrealSerializerFactory serializerFactory;
+
+    @Setup
+    public void setup() {
+        File dir = new File(systemDir);
+        environment = new Environment(dir, Collections.singletonList("*.u"));
+        unrealPackage = new UnrealPackage(new File(dir, file), true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        unrealPackage.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeFactory() {
+        if (serializerFactory != null) {
+            serializerFactory.close();
+            serializerFactory = null;
+        }
+    }
+
+    @Benchmark
+    public long serial() {
+        serializerFactory = new UnrealSerializerFactory(environment);
+        long length = 0;
+        for (UnrealPackage.ExportEntry entry : unrealPackage.getExportTable()) {
+            if (!UnrealSerializerFactory.IS_STRUCT.test(entry.getFullClassName())) {
+                continue;
+            }
+            Struct struct = (Struct) serializerFactory.getOrCreateObject(entry);
+            length += Disassembler.toString(struct.getBytecode(), new UnrealRuntimeContext(entry, serializerFactory)).length();
+            if (struct.scriptText != null && struct.scriptText.text != null) {
+                length += struct.scriptText.text.length();
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long parallel() {
+        serializerFactory = new UnrealSerializerFactory(environment);
+        serializerFactory.setLazyBytecode(true);
+        LongAdder length = new LongAdder();
+        new Disassembler(serializerFactory).disassemble(unrealPackage, new Disassembler.Output() {
+            @Override
+            public void bytecode(UnrealPackage.ExportEntry entry, String text) {
+                length.add(text.length());
+            }
+
+            @Override
+            public void scriptText(UnrealPackage.ExportEntry entry, String text) {
+                length.add(text.length());
+            }
+        }).join();
+        return length.sum();
+    }
+}
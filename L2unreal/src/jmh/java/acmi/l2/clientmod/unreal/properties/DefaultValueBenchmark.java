@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.properties;
+
+import acmi.l2.clientmod.io.UnrealPackage;
+import acmi.l2.clientmod.unreal.Environment;
+import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
+import acmi.l2.clientmod.unreal.core.Class;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Default value resolution for every class of a bundled package.
+ * Run with {@code ant benchmark}, the working directory must be the L2unreal module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefaultValueBenchmark {
+    @Param({"Engine.u", "Interface.u"})
+    public String file;
+
+    @Param("src/test/resources/system")
+    public String systemDir;
+
+    private UnrealSerializerFactory serializerFactory;
+    private UnrealPackage unrealPackage;
+    private List<Class> classes;
+
+    @Setup
+    public void setup() {
+        File dir = new File(systemDir);
+        serializerFactory = new UnrealSerializerFactory(new Environment(dir, Collections.singletonList("*.u")));
+        unrealPackage = new UnrealPackage(new File(dir, file), true);
+        classes = unrealPackage.getExportTable()
+                .stream()
+                .filter(e -> e.getFullClassName().equalsIgnoreCase("Core.Class"))
+                .map(serializerFactory::getOrCreateObject)
+                .map(o -> (Class) o)
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        unrealPackage.close();
+    }
+
+    @Benchmark
+    public int removeDefaults() {
+        int left = 0;
+        for (Class clazz : classes) {
+            List<L2Property> properties = clazz.properties
+                    .stream()
+                    .map(L2Property::copy)
+                    .collect(Collectors.toList());
+            PropertiesUtil.removeDefaults(properties, clazz.getFullName(), serializerFactory, unrealPackage);
+            left += properties.size();
+        }
+        return left;
+    }
+
+    @Benchmark
+    public int create() {
+        int size = 0;
+        for (Class clazz : classes) {
+            String name = clazz.getFullName();
+            size += PropertiesUtil.getProperties(name, serializerFactory, true, true)
+                    .map(property -> PropertiesUtil.create(property, name, serializerFactory, unrealPackage))
+                    .mapToInt(L2Property::getSize)
+                    .sum();
+        }
+        return size;
+    }
+}
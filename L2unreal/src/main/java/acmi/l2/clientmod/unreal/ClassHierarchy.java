@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Interned class ids with their ancestor chains, a class is a subclass of another
+ * if the other's id is at the other's depth in its chain.
+ * <p>
+ * Chains that end at a class which can't be resolved yet are not interned, so they
+ * are picked up once the package defining it becomes available.
+ */
+final class ClassHierarchy {
+    /**
+     * Super class name of a class, {@link Optional#empty()} for a root and null for an unknown class.
+     */
+    private final Function<String, Optional<String>> superClass;
+    private final Map<String, Node> nodes = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+    /**
+     * Nodes by the exact spelling callers used, so repeated queries neither case-fold nor allocate.
+     */
+    private final Map<String, Node> spellings = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    ClassHierarchy(Function<String, Optional<String>> superClass) {
+        this.superClass = superClass;
+    }
+
+    /**
+     * @return null if {@code clazz} or one of its super classes is unknown
+     */
+    Node node(String clazz) {
+        Node node = get(clazz);
+        if (node != null) {
+            return node;
+        }
+
+        Deque<String> unknown = new ArrayDeque<>();
+        Node parent = null;
+        for (String c = clazz; c != null; ) {
+            parent = nodes.get(c);
+            if (parent != null) {
+                break;
+            }
+            Optional<String> sup = superClass.apply(c);
+            if (sup == null) {
+                return null;
+            }
+            unknown.push(c);
+            c = sup.orElse(null);
+        }
+
+        while (!unknown.isEmpty()) {
+            Node p = parent;
+            String name = unknown.pop();
+            parent = nodes.computeIfAbsent(name, k -> new Node(ids.getAndIncrement(), name, p));
+        }
+        return parent;
+    }
+
+    Node get(String clazz) {
+        Node node = spellings.get(clazz);
+        if (node != null) {
+            return node;
+        }
+        node = nodes.get(clazz);
+        if (node != null) {
+            spellings.put(clazz, node);
+        }
+        return node;
+    }
+
+    /**
+     * Drops classes of {@code pckg} and their subclasses, they are interned again on next query.
+     */
+    void invalidate(String pckg) {
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.name.length() > pckg.length() && node.name.charAt(pckg.length()) == '.' &&
+                    node.name.regionMatches(true, 0, pckg, 0, pckg.length())) {
+                roots.add(node);
+            }
+        }
+        if (roots.isEmpty()) {
+            return;
+        }
+
+        nodes.values().removeIf(node -> node.isSubclassOfAny(roots));
+        spellings.values().removeIf(node -> node.isSubclassOfAny(roots));
+    }
+
+    static final class Node {
+        final int id;
+        final String name;
+        /**
+         * Ids from the root class down to this one.
+         */
+        private final int[] chain;
+
+        Node(int id, String name, Node parent) {
+            this.id = id;
+            this.name = name;
+            this.chain = parent == null ? new int[1] : Arrays.copyOf(parent.chain, parent.chain.length + 1);
+            this.chain[chain.length - 1] = id;
+        }
+
+        boolean isSubclassOf(Node parent) {
+            int depth = parent.chain.length - 1;
+            return depth < chain.length && chain[depth] == parent.id;
+        }
+
+        private boolean isSubclassOfAny(List<Node> parents) {
+            for (Node parent : parents) {
+                if (isSubclassOf(parent)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
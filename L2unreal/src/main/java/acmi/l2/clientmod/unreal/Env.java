@@ -85,4 +85,11 @@ public interface Env {
     }
 
     void markInvalid(String pckg);
+
+    /**
+     * Whether lookups may be called from several threads at once, otherwise callers serialize them.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 }
@@ -31,12 +31,10 @@ import acmi.l2.clientmod.io.UnrealPackage;
 import lombok.Getter;
 
 import lombok.NonNull;
-import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.function.BinaryOperator;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,6 +47,10 @@ public class Environment implements Env {
 
     private static final Set<String> BUFFERED_PACKAGES = new HashSet<>(Arrays.asList(System.getProperty("L2unreal.bufferedExt", "").split(",")));
 
+    private static final int PACKAGE_BUDGET = Integer.getInteger("L2unreal.packageBudget", 0);
+
+    private static final String EXPORT_INDEX = System.getProperty("L2unreal.exportIndex");
+
     private static final Pattern PATHS_PATTERN = Pattern.compile("\\s*Paths=(.*)");
 
     @Getter
@@ -56,14 +58,55 @@ public class Environment implements Env {
     @Getter
     private final List<String> paths;
 
-    private final Map<String, List<File>> fileCache = new HashMap<>();
-    private final Map<File, UnrealPackage> pckgCache = new HashMap<>();
-    private final Map<UnrealPackage, Map<String, UnrealPackage.ExportEntry[]>> entriesCache = new HashMap<>();
-    private final Map<UnrealPackage, Map<String, UnrealPackage.ExportEntry[]>> entriesCache2 = new HashMap<>();
+    private final PackageIndex index;
+    // loaders only run on lookups, after construction
+    @SuppressWarnings("this-escape")
+    private final PackageCache packageCache = new PackageCache(this::load);
+    private volatile ExportIndex exportIndex;
 
+    /**
+     * An export index set with {@code -DL2unreal.exportIndex} is not checked up front, packages that
+     * changed are indexed again when they are looked up.
+     */
+    @SuppressWarnings("this-escape")
     public Environment(@NonNull File startDir, @NonNull List<String> paths) {
         this.startDir = startDir;
         this.paths = paths;
+        this.index = new PackageIndex(startDir, paths);
+        this.packageCache.setBudget(PACKAGE_BUDGET);
+        if (EXPORT_INDEX != null) {
+            this.exportIndex = new ExportIndex(startDir.toPath().resolve(EXPORT_INDEX).toFile(), this::load);
+        }
+    }
+
+    public Optional<File> getExportIndex() {
+        return Optional.ofNullable(exportIndex).map(ExportIndex::getIndexFile);
+    }
+
+    /**
+     * Resolves export names through an index saved to {@code indexFile}, packages are only parsed
+     * to build it and when their size or modification time changed. Null disables the index.
+     */
+    public void setExportIndex(File indexFile) {
+        if (indexFile == null) {
+            exportIndex = null;
+            return;
+        }
+        ExportIndex exportIndex = new ExportIndex(indexFile, this::load);
+        exportIndex.update(listFiles());
+        this.exportIndex = exportIndex;
+    }
+
+    /**
+     * Maximum number of packages to keep parsed, least recently used ones beyond it are released
+     * once no loaded object refers to them. 0 keeps everything.
+     */
+    public int getPackageBudget() {
+        return packageCache.getBudget();
+    }
+
+    public void setPackageBudget(int packageBudget) {
+        packageCache.setBudget(packageBudget);
     }
 
     public static Environment fromIni(File ini) throws UncheckedIOException {
@@ -107,67 +150,98 @@ public class Environment implements Env {
     }
 
     @Override
-    public Stream<File> getPackage(String name) {
-        if (!fileCache.containsKey(name)) {
-            fileCache.put(name, listFiles()
-                    .filter(file -> FilenameUtils.removeExtension(file.getName()).equalsIgnoreCase(name))
-                    .collect(Collectors.toList()));
-        }
+    public Stream<File> listFiles() {
+        return index.listFiles();
+    }
 
-        return fileCache.get(name).stream();
+    @Override
+    public Stream<File> getPackage(String name) {
+        return index.getPackage(name).stream();
     }
 
     @Override
     public Optional<UnrealPackage> getPackage(File f) {
-        if (!pckgCache.containsKey(f)) {
-            log.fine("Loading " + f.getPath());
-
-            try (RandomAccess ra = createRandomAccess(f)) {
-                UnrealPackage up = new UnrealPackage(ra);
-                pckgCache.put(f, up);
-
-                BinaryOperator<UnrealPackage.ExportEntry[]> bo = (exportEntries, exportEntries2) -> {
-                    UnrealPackage.ExportEntry[] res = new UnrealPackage.ExportEntry[exportEntries.length + exportEntries2.length];
-                    System.arraycopy(exportEntries, 0, res, 0, exportEntries.length);
-                    System.arraycopy(exportEntries2, 0, res, exportEntries.length, exportEntries2.length);
-                    return res;
-                };
-                entriesCache.put(up, up.getExportTable().stream().collect(Collectors.toMap(e -> e.getObjectFullName().toLowerCase(), e -> new UnrealPackage.ExportEntry[]{e}, bo)));
-                entriesCache2.put(up, up.getExportTable().stream().collect(Collectors.toMap(e -> e.getObjectName().getName().toLowerCase(), e -> new UnrealPackage.ExportEntry[]{e}, bo)));
-            } catch (Exception e) {
-                log.log(Level.WARNING, e, () -> String.format("Couldn't load %s", f.getPath()));
-            }
-        }
+        return packageCache.get(f).map(PackageCache.Loaded::getUnrealPackage);
+    }
+
+    private UnrealPackage load(File f) {
+        log.fine("Loading " + f.getPath());
 
-        return Optional.ofNullable(pckgCache.get(f));
+        try (RandomAccess ra = createRandomAccess(f)) {
+            return new UnrealPackage(ra);
+        } catch (Exception e) {
+            log.log(Level.WARNING, e, () -> String.format("Couldn't load %s", f.getPath()));
+            return null;
+        }
     }
 
     @Override
     public Optional<UnrealPackage.ExportEntry> getExportEntry(@NonNull String fullName, @NonNull Predicate<String> fullClassName) throws UncheckedIOException {
+        Optional<ExportSymbol> symbol = findExport(fullName, fullClassName);
+        Optional<UnrealPackage.ExportEntry> entry = symbol.flatMap(this::resolve);
+        ExportIndex exportIndex = this.exportIndex;
+        if (symbol.isPresent() && !entry.isPresent() && exportIndex != null) {
+            exportIndex.invalidate(symbol.get().getFile());
+            entry = findExport(fullName, fullClassName).flatMap(this::resolve);
+        }
+        return entry;
+    }
+
+    /**
+     * Same lookup as {@link #getExportEntry}, without parsing packages when the export index is enabled.
+     */
+    public Optional<ExportSymbol> findExport(@NonNull String fullName, @NonNull Predicate<String> fullClassName) {
         String[] path = fullName.split("\\.");
-        Optional<UnrealPackage.ExportEntry> entryOptional = listPackages(path[0])
-                .map(entriesCache::get)
-                .map(map -> map.getOrDefault(fullName.toLowerCase(), new UnrealPackage.ExportEntry[0]))
-                .flatMap(Arrays::stream)
-                .filter(e -> fullClassName.test(e.getFullClassName()))
+        Optional<ExportSymbol> symbol = findExport(path[0], true, fullName)
+                .filter(s -> fullClassName.test(s.getFullClassName()))
                 .findAny();
-        if (!entryOptional.isPresent()) {
-            entryOptional = listPackages(path[0])
-                    .map(entriesCache2::get)
-                    .map(map -> map.getOrDefault(path[path.length - 1].toLowerCase(), new UnrealPackage.ExportEntry[0]))
-                    .flatMap(Arrays::stream)
-                    .filter(e -> fullClassName.test(e.getFullClassName()))
+        if (!symbol.isPresent()) {
+            symbol = findExport(path[0], false, path[path.length - 1])
+                    .filter(s -> fullClassName.test(s.getFullClassName()))
                     .findAny();
         }
-        return entryOptional;
+        return symbol;
+    }
+
+    private Stream<ExportSymbol> findExport(String packageName, boolean fullName, String name) {
+        ExportIndex exportIndex = this.exportIndex;
+        return getPackage(packageName).flatMap(file -> {
+            if (exportIndex != null) {
+                return fullName ? exportIndex.findByFullName(file, name) : exportIndex.findByName(file, name);
+            }
+            return packageCache.get(file)
+                    .map(loaded -> Arrays.stream(fullName ? loaded.getByFullName(name) : loaded.getByName(name))
+                            .map(e -> new ExportSymbol(file, e.getIndex(), e.getObjectFullName(), e.getFullClassName())))
+                    .orElseGet(Stream::empty);
+        });
+    }
+
+    private Optional<UnrealPackage.ExportEntry> resolve(ExportSymbol symbol) {
+        return getPackage(symbol.getFile())
+                .map(UnrealPackage::getExportTable)
+                .filter(table -> symbol.getExportIndex() < table.size())
+                .map(table -> table.get(symbol.getExportIndex()))
+                .filter(e -> e.getObjectFullName().equals(symbol.getObjectFullName()) &&
+                        e.getFullClassName().equals(symbol.getFullClassName()));
+    }
+
+    /**
+     * Lookups of this class are safe for concurrent use. Subclasses that override them without
+     * keeping them so must return false.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
     }
 
     @Override
     public void markInvalid(String pckg) {
         getPackage(pckg).forEach(file -> {
-            UnrealPackage toRemove = pckgCache.remove(file);
-            entriesCache.remove(toRemove);
-            entriesCache2.remove(toRemove);
+            packageCache.remove(file);
+            ExportIndex exportIndex = this.exportIndex;
+            if (exportIndex != null) {
+                exportIndex.invalidate(file);
+            }
 
             log.fine("Remove from cache " + file.getPath());
         });
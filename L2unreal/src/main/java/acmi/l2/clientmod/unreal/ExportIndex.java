@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import acmi.l2.clientmod.io.UnrealPackage;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Export names and classes of package files, persisted to an index file.
+ * <p>
+ * Every file is recorded with its size and modification time, files that changed since are parsed
+ * again on {@link #update} or when they are looked up, unchanged files are never opened. Only the list
+ * of files is read up front, names of a file are read from the index file when it is first looked up.
+ * <p>
+ * Files parsed on lookup are saved in the background, batched with other lookups. Blocks of files
+ * that were not looked up are copied to the new index file as they are.
+ */
+final class ExportIndex {
+    private static final Logger log = Logger.getLogger(ExportIndex.class.getName());
+
+    private static final int MAGIC = 0x4c324549;
+    private static final int VERSION = 1;
+    private static final long SAVE_DELAY = 1;
+
+    private final File indexFile;
+    private final Function<File, UnrealPackage> loader;
+    private final Map<String, Symbols> files = new ConcurrentHashMap<>();
+    /**
+     * Set while a save of files parsed on lookup is pending.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * @param loader parses a file, null if it couldn't be read
+     */
+    ExportIndex(File indexFile, Function<File, UnrealPackage> loader) {
+        this.indexFile = indexFile;
+        this.loader = loader;
+        read();
+    }
+
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Parses files that are new or changed in parallel, forgets files not in {@code packageFiles}
+     * and saves the index if anything changed.
+     */
+    void update(Stream<File> packageFiles) {
+        Map<String, File> current = packageFiles.collect(Collectors.toMap(ExportIndex::key, f -> f, (a, b) -> a, LinkedHashMap::new));
+        boolean removed = files.keySet().retainAll(current.keySet());
+        long changed = current.values()
+                .parallelStream()
+                .filter(file -> symbols(file, false) != null)
+                .count();
+        boolean parsed = dirty.getAndSet(false);
+        if (parsed || removed || changed > 0) {
+            save();
+        }
+    }
+
+    Stream<ExportSymbol> findByFullName(File file, String fullName) {
+        return find(file, symbols -> symbols.byFullName(), fullName);
+    }
+
+    Stream<ExportSymbol> findByName(File file, String name) {
+        return find(file, symbols -> symbols.byName(), name);
+    }
+
+    void invalidate(File file) {
+        files.remove(key(file));
+    }
+
+    private Stream<ExportSymbol> find(File file, Function<Symbols, Map<String, int[]>> map, String name) {
+        Symbols symbols = symbols(file, true);
+        try {
+            decode(symbols);
+        } catch (UncheckedIOException e) {
+            log.log(Level.FINE, e, () -> String.format("Couldn't read %s from %s", file.getPath(), indexFile.getPath()));
+            invalidate(file);
+            symbols = symbols(file, true);
+        }
+        int[] indexes = map.apply(symbols).get(name.toLowerCase());
+        if (indexes == null) {
+            return Stream.empty();
+        }
+        Symbols found = symbols;
+        return Arrays.stream(indexes)
+                .mapToObj(i -> new ExportSymbol(file, i, found.fullName(i), found.className(i)));
+    }
+
+    private void decode(Symbols symbols) throws UncheckedIOException {
+        try {
+            symbols.decode();
+        } catch (UncheckedIOException e) {
+            // the index file may have been replaced by a concurrent save, blocks are relocated once it is done
+            synchronized (this) {
+                symbols.decode();
+            }
+        }
+    }
+
+    /**
+     * Returns current symbols of the file, or, if {@code current} is false, the newly parsed ones
+     * and null if the recorded ones are up to date.
+     */
+    private Symbols symbols(File file, boolean current) {
+        String key = key(file);
+        long size = file.length();
+        long modified = file.lastModified();
+        Symbols symbols = files.get(key);
+        if (symbols != null && symbols.size == size && symbols.modified == modified) {
+            return current ? symbols : null;
+        }
+
+        symbols = parse(file, size, modified);
+        files.put(key, symbols);
+        if (current && dirty.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                if (dirty.getAndSet(false)) {
+                    save();
+                }
+            }, CompletableFuture.delayedExecutor(SAVE_DELAY, TimeUnit.SECONDS));
+        }
+        return symbols;
+    }
+
+    private Symbols parse(File file, long size, long modified) {
+        log.fine(() -> "Indexing " + file.getPath());
+
+        UnrealPackage up = loader.apply(file);
+        if (up == null) {
+            return new Symbols(size, modified, new String[0], new String[0], new String[0]);
+        }
+        List<UnrealPackage.ExportEntry> exports = up.getExportTable();
+        String[] fullNames = new String[exports.size()];
+        String[] names = new String[exports.size()];
+        String[] classNames = new String[exports.size()];
+        for (int i = 0; i < exports.size(); i++) {
+            UnrealPackage.ExportEntry entry = exports.get(i);
+            fullNames[i] = entry.getObjectFullName();
+            names[i] = entry.getObjectName().getName();
+            classNames[i] = entry.getFullClassName();
+        }
+        return new Symbols(size, modified, fullNames, names, classNames);
+    }
+
+    private static String key(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /**
+     * Reads the directory of files, their symbols are read on first use.
+     */
+    private void read() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                log.fine(() -> String.format("Unknown format of %s, rebuilding", indexFile.getPath()));
+                return;
+            }
+            long base = 12L + input.readInt();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = input.readUTF();
+                long size = input.readLong();
+                long modified = input.readLong();
+                long offset = input.readLong();
+                int length = input.readInt();
+                files.put(key, new Symbols(key, size, modified, indexFile, base + offset, length));
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, e, () -> String.format("Couldn't read %s, rebuilding", indexFile.getPath()));
+            files.clear();
+        }
+    }
+
+    private synchronized void save() {
+        Map<String, Symbols> snapshot = new TreeMap<>(files);
+        Map<String, byte[]> blocks = new HashMap<>();
+        try (RandomAccessFile previous = indexFile.isFile() ? new RandomAccessFile(indexFile, "r") : null) {
+            snapshot.entrySet().removeIf(e -> {
+                try {
+                    blocks.put(e.getKey(), e.getValue().block(e.getKey(), previous));
+                    return false;
+                } catch (UncheckedIOException ex) {
+                    files.remove(e.getKey(), e.getValue());
+                    return true;
+                }
+            });
+        } catch (IOException e) {
+            log.log(Level.WARNING, e, () -> String.format("Couldn't read %s", indexFile.getPath()));
+            return;
+        }
+        try {
+            ByteArrayOutputStream directory = new ByteArrayOutputStream();
+            Map<String, Long> offsets = new HashMap<>();
+            try (DataOutputStream output = new DataOutputStream(directory)) {
+                output.writeInt(snapshot.size());
+                long offset = 0;
+                for (Map.Entry<String, Symbols> e : snapshot.entrySet()) {
+                    byte[] block = blocks.get(e.getKey());
+                    output.writeUTF(e.getKey());
+                    output.writeLong(e.getValue().size);
+                    output.writeLong(e.getValue().modified);
+                    output.writeLong(offset);
+                    output.writeInt(block.length);
+                    offsets.put(e.getKey(), offset);
+                    offset += block.length;
+                }
+            }
+
+            File tmp = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(directory.size());
+                directory.writeTo(output);
+                for (String key : snapshot.keySet()) {
+                    output.write(blocks.get(key));
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            long base = 12L + directory.size();
+            snapshot.forEach((key, symbols) -> symbols.relocate(base + offsets.get(key)));
+        } catch (IOException | UncheckedIOException e) {
+            log.log(Level.WARNING, e, () -> String.format("Couldn't save %s", indexFile.getPath()));
+        }
+    }
+
+    /**
+     * Export names of one file. Symbols of files read from the index file are decoded on first use.
+     */
+    private static final class Symbols {
+        final long size;
+        final long modified;
+        private String key;
+        private File source;
+        private long offset;
+        private int length;
+        private String[] fullNames;
+        private String[] names;
+        private String[] classNames;
+        private Map<String, int[]> byFullName;
+        private Map<String, int[]> byName;
+
+        Symbols(long size, long modified, String[] fullNames, String[] names, String[] classNames) {
+            this.size = size;
+            this.modified = modified;
+            this.fullNames = fullNames;
+            this.names = names;
+            this.classNames = classNames;
+        }
+
+        Symbols(String key, long size, long modified, File source, long offset, int length) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        synchronized String fullName(int index) {
+            decode();
+            return fullNames[index];
+        }
+
+        synchronized String className(int index) {
+            decode();
+            return classNames[index];
+        }
+
+        synchronized Map<String, int[]> byFullName() {
+            decode();
+            if (byFullName == null) {
+                byFullName = lookup(fullNames);
+            }
+            return byFullName;
+        }
+
+        synchronized Map<String, int[]> byName() {
+            decode();
+            if (byName == null) {
+                byName = lookup(names);
+            }
+            return byName;
+        }
+
+        /**
+         * Encoded block, read as it is from {@code previous} while not decoded.
+         */
+        synchronized byte[] block(String key, RandomAccessFile previous) throws UncheckedIOException {
+            if (source == null) {
+                return encode(key);
+            }
+            if (previous == null) {
+                throw new UncheckedIOException(new FileNotFoundException(source.getPath()));
+            }
+            return readBlock(previous);
+        }
+
+        /**
+         * Points an undecoded block at its offset in the saved index file.
+         */
+        synchronized void relocate(long offset) {
+            if (source != null) {
+                this.offset = offset;
+            }
+        }
+
+        /**
+         * Blocks repeat the directory entry so a block read through an outdated offset is detected.
+         * Class names are stored once per file, short names only where they aren't the last part of the full name.
+         */
+        private byte[] encode(String key) throws UncheckedIOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(baos)) {
+                output.writeUTF(key);
+                output.writeLong(size);
+                output.writeLong(modified);
+                Map<String, Integer> classes = new LinkedHashMap<>();
+                for (String className : classNames) {
+                    classes.putIfAbsent(className, classes.size());
+                }
+                output.writeInt(classes.size());
+                for (String className : classes.keySet()) {
+                    output.writeUTF(className);
+                }
+                output.writeInt(fullNames.length);
+                for (int i = 0; i < fullNames.length; i++) {
+                    output.writeUTF(fullNames[i]);
+                    output.writeUTF(names[i].equals(shortName(fullNames[i])) ? "" : names[i]);
+                    output.writeInt(classes.get(classNames[i]));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return baos.toByteArray();
+        }
+
+        /**
+         * @throws UncheckedIOException if the index file can't be read or was replaced since
+         */
+        synchronized void decode() throws UncheckedIOException {
+            if (source == null) {
+                return;
+            }
+
+            byte[] block;
+            try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+                block = readBlock(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(block))) {
+                input.readUTF();
+                input.readLong();
+                input.readLong();
+                String[] classes = new String[input.readInt()];
+                for (int i = 0; i < classes.length; i++) {
+                    classes[i] = input.readUTF();
+                }
+                int count = input.readInt();
+                fullNames = new String[count];
+                names = new String[count];
+                classNames = new String[count];
+                for (int i = 0; i < count; i++) {
+                    fullNames[i] = input.readUTF();
+                    String name = input.readUTF();
+                    names[i] = name.isEmpty() ? shortName(fullNames[i]) : name;
+                    classNames[i] = classes[input.readInt()];
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            source = null;
+            key = null;
+        }
+
+        /**
+         * @throws UncheckedIOException if the block at {@link #offset} doesn't belong to this file
+         */
+        private byte[] readBlock(RandomAccessFile file) throws UncheckedIOException {
+            byte[] block = new byte[length];
+            try {
+                file.seek(offset);
+                file.readFully(block);
+                try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(block))) {
+                    if (!input.readUTF().equals(key) || input.readLong() != size || input.readLong() != modified) {
+                        throw new IOException(String.format("%s was changed", source.getPath()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return block;
+        }
+
+        private static String shortName(String fullName) {
+            return fullName.substring(fullName.lastIndexOf('.') + 1);
+        }
+
+        private static Map<String, int[]> lookup(String[] keys) {
+            Map<String, int[]> map = new HashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                int index = i;
+                map.merge(keys[i].toLowerCase(), new int[]{i}, (a, b) -> {
+                    int[] res = Arrays.copyOf(a, a.length + 1);
+                    res[a.length] = index;
+                    return res;
+                });
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import acmi.l2.clientmod.io.RandomAccess;
+import acmi.l2.clientmod.io.RandomAccessFile;
+import acmi.l2.clientmod.io.UnrealPackage;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Loaded objects keyed by (package id, export index) of the entry they were resolved to.
+ * <p>
+ * Name lookups go through a separate case-insensitive index on the entry's own cached names,
+ * and references read from a package are remembered per package instance, so lookups
+ * don't build or case-fold name strings.
+ * With a budget set, the least recently used evictable objects beyond it are dropped,
+ * they are loaded again as new instances on the next request.
+ * An {@link #invalidate invalidated} package file gets a new id, so objects read from its old
+ * tables are never found by export index again.
+ */
+final class ObjectRegistry<T> {
+    private static final int DUMMY_PACKAGE = -1;
+
+    /**
+     * Ids of package files by absolute path, packages that are not backed by a file by instance.
+     */
+    private final Map<String, Integer> packageIds = new ConcurrentHashMap<>();
+    private final Map<RandomAccess, Integer> memoryPackageIds = new WeakHashMap<>();
+    private final AtomicInteger nextPackageId = new AtomicInteger();
+    private final Map<String, Integer> dummyIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextDummyId = new AtomicInteger();
+    private final Map<Long, T> objects = new ConcurrentHashMap<>();
+    /**
+     * Keys by object full name, then by full class name.
+     */
+    private final Map<String, Map<String, Long>> names = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<UnrealPackage, References> references = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Function<T, UnrealPackage.Entry> entry;
+    private final Predicate<T> evictable;
+    private final Predicate<T> settled;
+
+    /**
+     * Keys of evictable objects in access order, guarded by itself.
+     */
+    private final LinkedHashMap<Long, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile int budget;
+
+    /**
+     * @param entry     export entry an object was resolved to, null for dummies
+     * @param evictable objects that may be dropped once over budget
+     * @param settled   objects that are not being loaded anymore
+     */
+    ObjectRegistry(Function<T, UnrealPackage.Entry> entry, Predicate<T> evictable, Predicate<T> settled) {
+        this.entry = entry;
+        this.evictable = evictable;
+        this.settled = settled;
+    }
+
+    /**
+     * Case-folded name and class of {@code entry}, for callers that need a plain map key.
+     */
+    static String nameKey(UnrealPackage.Entry entry) {
+        return (entry.getObjectFullName() + "_" + entry.getFullClassName()).toLowerCase();
+    }
+
+    long key(UnrealPackage.ExportEntry entry) {
+        return key(packageId(entry.getUnrealPackage()), entry.getIndex());
+    }
+
+    private int packageId(UnrealPackage unrealPackage) {
+        RandomAccess file = unrealPackage.getFile();
+        if (file instanceof RandomAccessFile) {
+            String path = new File(((RandomAccessFile) file).getPath()).getAbsolutePath();
+            return packageIds.computeIfAbsent(path, k -> nextPackageId.getAndIncrement());
+        }
+        synchronized (memoryPackageIds) {
+            return memoryPackageIds.computeIfAbsent(file, k -> nextPackageId.getAndIncrement());
+        }
+    }
+
+    long dummyKey(String nameKey) {
+        return key(DUMMY_PACKAGE, dummyIds.computeIfAbsent(nameKey, k -> nextDummyId.getAndIncrement()));
+    }
+
+    private static long key(int packageId, int index) {
+        return ((long) packageId << 32) | (index & 0xffffffffL);
+    }
+
+    /**
+     * Object a reference read from {@code local}'s package was resolved to before.
+     */
+    T getReference(UnrealPackage.Entry local) {
+        References refs = references.get(local.getUnrealPackage());
+        long key = refs != null ? refs.get(local.getObjectReference()) : References.UNKNOWN;
+        if (key == References.UNKNOWN) {
+            return null;
+        }
+
+        return matching(get(key), local);
+    }
+
+    /**
+     * {@code obj} if it was resolved to an entry with the name and class of {@code local},
+     * package tables may have been edited since.
+     */
+    private T matching(T obj, UnrealPackage.Entry local) {
+        if (obj == null) {
+            return null;
+        }
+        UnrealPackage.Entry resolved = entry.apply(obj);
+        return resolved == null ||
+                resolved.getObjectName().getName().equalsIgnoreCase(local.getObjectName().getName()) &&
+                        resolved.getFullClassName().equalsIgnoreCase(local.getFullClassName()) ? obj : null;
+    }
+
+    T getByName(UnrealPackage.Entry local) {
+        Map<String, Long> byClass = names.get(local.getObjectFullName());
+        Long key = byClass != null ? byClass.get(local.getFullClassName()) : null;
+        T obj = key != null ? get(key) : null;
+        if (obj != null) {
+            remember(local, key);
+        }
+        return obj;
+    }
+
+    T get(UnrealPackage.ExportEntry entry) {
+        return matching(get(key(entry)), entry);
+    }
+
+    private T get(long key) {
+        T obj = objects.get(key);
+        if (obj != null && budget > 0 && evictable.test(obj)) {
+            synchronized (lru) {
+                lru.get(key);
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * Registers {@code obj} unless another thread did first.
+     *
+     * @return the registered object
+     */
+    T putIfAbsent(UnrealPackage.Entry local, long key, T obj) {
+        T existing = objects.putIfAbsent(key, obj);
+        if (existing != null) {
+            obj = existing;
+        } else if (budget > 0 && evictable.test(obj)) {
+            synchronized (lru) {
+                lru.put(key, Boolean.TRUE);
+            }
+        }
+        names.computeIfAbsent(local.getObjectFullName(), k -> new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER))
+                .put(local.getFullClassName(), key);
+        remember(local, key);
+        evict();
+        return obj;
+    }
+
+    private void remember(UnrealPackage.Entry local, long key) {
+        if (local.getObjectReference() != 0) {
+            references.computeIfAbsent(local.getUnrealPackage(), References::new)
+                    .set(local.getObjectReference(), key);
+        }
+    }
+
+    private void evict() {
+        int budget = this.budget;
+        if (budget <= 0) {
+            return;
+        }
+
+        synchronized (lru) {
+            for (Iterator<Long> it = lru.keySet().iterator(); lru.size() > budget && it.hasNext(); ) {
+                Long key = it.next();
+                T obj = objects.get(key);
+                if (obj != null && !settled.test(obj)) {
+                    continue;
+                }
+                it.remove();
+                if (obj != null) {
+                    objects.remove(key);
+                    UnrealPackage.Entry e = entry.apply(obj);
+                    Map<String, Long> byClass = e != null ? names.get(e.getObjectFullName()) : null;
+                    if (byClass != null) {
+                        byClass.remove(e.getFullClassName(), key);
+                    }
+                }
+            }
+        }
+    }
+
+    int getBudget() {
+        return budget;
+    }
+
+    void setBudget(int budget) {
+        synchronized (lru) {
+            if (this.budget <= 0 && budget > 0) {
+                objects.forEach((key, obj) -> {
+                    if (evictable.test(obj)) {
+                        lru.put(key, Boolean.TRUE);
+                    }
+                });
+            } else if (budget <= 0) {
+                lru.clear();
+            }
+            this.budget = budget;
+        }
+        evict();
+    }
+
+    /**
+     * Forgets objects read from package files named {@code pckg} and dummies created for names in it,
+     * the files get new ids. Only file backed packages can be reloaded, in-memory ones are kept.
+     */
+    void invalidate(String pckg) {
+        Set<Integer> stale = new HashSet<>();
+        packageIds.entrySet().removeIf(e -> {
+            if (FilenameUtils.getBaseName(e.getKey()).equalsIgnoreCase(pckg)) {
+                stale.add(e.getValue());
+                return true;
+            }
+            return false;
+        });
+
+        String prefix = pckg.toLowerCase() + ".";
+        dummyIds.forEach((nameKey, id) -> {
+            if (nameKey.startsWith(prefix)) {
+                remove(key(DUMMY_PACKAGE, id));
+            }
+        });
+        if (!stale.isEmpty()) {
+            remove(key -> stale.contains((int) (key >>> 32)));
+        }
+    }
+
+    private void remove(long key) {
+        remove(k -> k == key);
+    }
+
+    private void remove(LongPredicate stale) {
+        synchronized (lru) {
+            lru.keySet().removeIf(stale::test);
+        }
+        objects.keySet().removeIf(stale::test);
+        names.values().forEach(byClass -> byClass.values().removeIf(stale::test));
+        synchronized (references) {
+            references.values().forEach(refs -> refs.remove(stale));
+        }
+    }
+
+    int size() {
+        return objects.size();
+    }
+
+    /**
+     * Registry keys by object reference of one package. Racing writers store the same key,
+     * so plain arrays are enough.
+     */
+    private static final class References {
+        static final long UNKNOWN = Long.MIN_VALUE;
+
+        private final long[] exports;
+        private final long[] imports;
+
+        References(UnrealPackage unrealPackage) {
+            exports = new long[unrealPackage.getExportTable().size()];
+            imports = new long[unrealPackage.getImportTable().size()];
+            Arrays.fill(exports, UNKNOWN);
+            Arrays.fill(imports, UNKNOWN);
+        }
+
+        long get(int ref) {
+            long[] table = ref > 0 ? exports : imports;
+            int index = Math.abs(ref) - 1;
+            return index < table.length ? table[index] : UNKNOWN;
+        }
+
+        void remove(LongPredicate stale) {
+            for (long[] table : new long[][]{exports, imports}) {
+                for (int i = 0; i < table.length; i++) {
+                    if (table[i] != UNKNOWN && stale.test(table[i])) {
+                        table[i] = UNKNOWN;
+                    }
+                }
+            }
+        }
+
+        void set(int ref, long key) {
+            long[] table = ref > 0 ? exports : imports;
+            int index = Math.abs(ref) - 1;
+            if (index < table.length) {
+                table[index] = key;
+            }
+        }
+    }
+}
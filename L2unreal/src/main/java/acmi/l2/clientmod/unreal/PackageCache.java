@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import acmi.l2.clientmod.io.UnrealPackage;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed packages by file with their export lookup tables, built on first lookup.
+ * <p>
+ * Each file is parsed by one thread at a time, concurrent requests for it wait for that result. With a budget set
+ * the least recently used packages beyond it drop their lookup tables and are only weakly referenced: while objects
+ * read from a package keep it reachable the same instance is returned again, otherwise the file is parsed anew.
+ */
+final class PackageCache {
+    private static final UnrealPackage.ExportEntry[] NO_ENTRIES = new UnrealPackage.ExportEntry[0];
+
+    static final class Loaded {
+        private final UnrealPackage unrealPackage;
+        private Map<String, UnrealPackage.ExportEntry[]> byFullName;
+        private Map<String, UnrealPackage.ExportEntry[]> byName;
+
+        private Loaded(UnrealPackage unrealPackage) {
+            this.unrealPackage = unrealPackage;
+        }
+
+        UnrealPackage getUnrealPackage() {
+            return unrealPackage;
+        }
+
+        synchronized UnrealPackage.ExportEntry[] getByFullName(String fullName) {
+            if (byFullName == null) {
+                byFullName = lookup(e -> e.getObjectFullName().toLowerCase());
+            }
+            return byFullName.getOrDefault(fullName.toLowerCase(), NO_ENTRIES);
+        }
+
+        synchronized UnrealPackage.ExportEntry[] getByName(String name) {
+            if (byName == null) {
+                byName = lookup(e -> e.getObjectName().getName().toLowerCase());
+            }
+            return byName.getOrDefault(name.toLowerCase(), NO_ENTRIES);
+        }
+
+        private Map<String, UnrealPackage.ExportEntry[]> lookup(Function<UnrealPackage.ExportEntry, String> key) {
+            BinaryOperator<UnrealPackage.ExportEntry[]> bo = (exportEntries, exportEntries2) -> {
+                UnrealPackage.ExportEntry[] res = new UnrealPackage.ExportEntry[exportEntries.length + exportEntries2.length];
+                System.arraycopy(exportEntries, 0, res, 0, exportEntries.length);
+                System.arraycopy(exportEntries2, 0, res, exportEntries.length, exportEntries2.length);
+                return res;
+            };
+            return unrealPackage.getExportTable().stream().collect(Collectors.toMap(key, e -> new UnrealPackage.ExportEntry[]{e}, bo));
+        }
+    }
+
+    private final Function<File, UnrealPackage> loader;
+    private final Map<File, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Files with loaded packages in access order, guarded by itself.
+     */
+    private final LinkedHashMap<File, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile int budget;
+
+    /**
+     * @param loader parses a file, null if it couldn't be read
+     */
+    PackageCache(Function<File, UnrealPackage> loader) {
+        this.loader = loader;
+    }
+
+    int getBudget() {
+        return budget;
+    }
+
+    void setBudget(int budget) {
+        this.budget = Math.max(0, budget);
+        evict(null);
+    }
+
+    Optional<Loaded> get(File file) {
+        Loaded loaded = slots.computeIfAbsent(file, Slot::new).get();
+        if (loaded != null) {
+            synchronized (lru) {
+                lru.put(file, Boolean.TRUE);
+            }
+            evict(file);
+        }
+        return Optional.ofNullable(loaded);
+    }
+
+    void remove(File file) {
+        slots.remove(file);
+        synchronized (lru) {
+            lru.remove(file);
+        }
+    }
+
+    private void evict(File keep) {
+        int budget = this.budget;
+        if (budget <= 0) {
+            return;
+        }
+        while (true) {
+            File eldest;
+            synchronized (lru) {
+                if (lru.size() <= budget) {
+                    return;
+                }
+                Iterator<File> it = lru.keySet().iterator();
+                eldest = it.next();
+                if (eldest.equals(keep)) {
+                    if (!it.hasNext()) {
+                        return;
+                    }
+                    eldest = it.next();
+                }
+                lru.remove(eldest);
+            }
+            Slot slot = slots.get(eldest);
+            if (slot != null) {
+                slot.evict();
+            }
+        }
+    }
+
+    private final class Slot {
+        private final File file;
+        private Loaded loaded;
+        private WeakReference<UnrealPackage> evicted;
+
+        Slot(File file) {
+            this.file = file;
+        }
+
+        synchronized Loaded get() {
+            if (loaded == null) {
+                UnrealPackage unrealPackage = evicted != null ? evicted.get() : null;
+                if (unrealPackage == null) {
+                    unrealPackage = loader.apply(file);
+                }
+                if (unrealPackage != null) {
+                    loaded = new Loaded(unrealPackage);
+                    evicted = null;
+                }
+            }
+            return loaded;
+        }
+
+        synchronized void evict() {
+            if (loaded != null) {
+                evicted = new WeakReference<>(loaded.unrealPackage);
+                loaded = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.filefilter.WildcardFileFilter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Files matching the {@code Paths} patterns of an environment by lowercase package name.
+ * <p>
+ * Directories are scanned once, in parallel, and kept current by a shared {@link WatchService}.
+ * Where a directory can't be watched its modification time is checked on lookup and it is scanned
+ * again when it changed. With {@code -DL2unreal.watchPaths=false} every directory is polled.
+ */
+final class PackageIndex {
+    private static final Logger log = Logger.getLogger(PackageIndex.class.getName());
+
+    private static final boolean WATCH_PATHS = Boolean.parseBoolean(System.getProperty("L2unreal.watchPaths", "true"));
+
+    private final List<PathPattern> patterns = new ArrayList<>();
+
+    PackageIndex(File startDir, List<String> paths) {
+        Map<Path, Directory> directories = new LinkedHashMap<>();
+        for (String s : paths) {
+            File file = new File(startDir, s);
+            File dir = file.getParentFile();
+            Directory directory = directories.computeIfAbsent(dir.toPath().toAbsolutePath().normalize(), path -> new Directory(dir, path));
+            patterns.add(new PathPattern(directory, WildcardFileFilter.builder().setWildcards(file.getName()).get()));
+        }
+        directories.values().parallelStream().forEach(Directory::open);
+    }
+
+    Stream<File> listFiles() {
+        return patterns.stream()
+                .flatMap(pattern -> pattern.directory.files()
+                        .values()
+                        .stream()
+                        .flatMap(List::stream)
+                        .filter(pattern.filter::accept))
+                .distinct();
+    }
+
+    List<File> getPackage(String name) {
+        String key = name.toLowerCase();
+        return patterns.stream()
+                .flatMap(pattern -> pattern.directory.files()
+                        .getOrDefault(key, Collections.emptyList())
+                        .stream()
+                        .filter(pattern.filter::accept))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static String key(File file) {
+        return FilenameUtils.removeExtension(file.getName()).toLowerCase();
+    }
+
+    private static final class PathPattern {
+        final Directory directory;
+        final FileFilter filter;
+
+        PathPattern(Directory directory, FileFilter filter) {
+            this.directory = directory;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * Regular files of one directory by lowercase name without extension. Updates are serialized on the instance,
+     * lookups read the current map without locking.
+     */
+    private static final class Directory {
+        final File dir;
+        final Path path;
+        volatile Map<String, List<File>> files = Collections.emptyMap();
+        volatile boolean watched;
+        volatile long modified;
+
+        Directory(File dir, Path path) {
+            this.dir = dir;
+            this.path = path;
+        }
+
+        void open() {
+            watched = WATCH_PATHS && Watcher.register(this);
+            scan();
+        }
+
+        Map<String, List<File>> files() {
+            if (!watched) {
+                long lastModified = dir.lastModified();
+                if (lastModified != modified) {
+                    scan();
+                }
+            }
+            return files;
+        }
+
+        synchronized void scan() {
+            modified = dir.lastModified();
+            Map<String, List<File>> map = new ConcurrentHashMap<>();
+            if (dir.isDirectory()) {
+                for (File file : FileUtils.listFiles(dir, null, false)) {
+                    map.merge(key(file), Collections.singletonList(file), Directory::concat);
+                }
+            }
+            files = map;
+        }
+
+        synchronized void created(File file) {
+            if (!file.isFile()) {
+                return;
+            }
+            files.compute(key(file), (k, list) -> {
+                if (list == null) {
+                    return Collections.singletonList(file);
+                }
+                return list.contains(file) ? list : concat(list, Collections.singletonList(file));
+            });
+        }
+
+        synchronized void deleted(File file) {
+            files.computeIfPresent(key(file), (k, list) -> {
+                List<File> rest = new ArrayList<>(list);
+                rest.remove(file);
+                return rest.isEmpty() ? null : Collections.unmodifiableList(rest);
+            });
+        }
+
+        private static List<File> concat(List<File> a, List<File> b) {
+            List<File> list = new ArrayList<>(a.size() + b.size());
+            list.addAll(a);
+            list.addAll(b);
+            return Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * One watch service and daemon thread for all indexes. Directories of indexes that were collected
+     * are dropped on their next event.
+     */
+    private static final class Watcher {
+        private static final Map<WatchKey, List<WeakReference<Directory>>> directories = new ConcurrentHashMap<>();
+        private static WatchService watchService;
+
+        static synchronized boolean register(Directory directory) {
+            try {
+                if (watchService == null) {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    Thread thread = new Thread(Watcher::run, "L2unreal paths watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                WatchKey key = directory.path.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                directories.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(new WeakReference<>(directory));
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.log(Level.FINE, e, () -> String.format("Couldn't watch %s, polling", directory.path));
+                return false;
+            }
+        }
+
+        private static void run() {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                List<WatchEvent<?>> events = key.pollEvents();
+                List<WeakReference<Directory>> references = directories.getOrDefault(key, Collections.emptyList());
+                references.removeIf(reference -> reference.get() == null);
+                for (WeakReference<Directory> reference : references) {
+                    Directory directory = reference.get();
+                    if (directory != null) {
+                        handle(directory, events);
+                    }
+                }
+                if (references.isEmpty()) {
+                    directories.remove(key);
+                    key.cancel();
+                } else if (!key.reset()) {
+                    directories.remove(key);
+                    references.stream()
+                            .map(WeakReference::get)
+                            .filter(Objects::nonNull)
+                            .forEach(directory -> directory.watched = false);
+                }
+            }
+        }
+
+        private static void handle(Directory directory, List<WatchEvent<?>> events) {
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    directory.scan();
+                    return;
+                }
+                File file = new File(directory.dir, event.context().toString());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    directory.created(file);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    directory.deleted(file);
+                }
+            }
+        }
+    }
+}
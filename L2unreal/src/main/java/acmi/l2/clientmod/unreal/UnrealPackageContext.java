@@ -28,6 +28,8 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.ToString;
 
+import java.nio.charset.Charset;
+
 @Getter
 @EqualsAndHashCode
 @ToString
@@ -38,4 +40,13 @@ public class UnrealPackageContext implements Context {
     public UnrealPackageContext(@NonNull UnrealPackage unrealPackage) {
         this.unrealPackage = unrealPackage;
     }
+
+    /**
+     * Charset of the package file, {@link UnrealPackage#getDefaultCharset()} if it has none.
+     */
+    @Override
+    public Charset getCharset() {
+        Charset charset = unrealPackage.getFile().getCharset();
+        return charset != null ? charset : UnrealPackage.getDefaultCharset();
+    }
 }
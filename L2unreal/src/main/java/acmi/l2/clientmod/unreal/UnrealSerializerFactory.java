@@ -22,49 +22,49 @@
 package acmi.l2.clientmod.unreal;
 
 import acmi.l2.clientmod.io.ObjectInput;
-import acmi.l2.clientmod.io.ObjectInputStream;
+import acmi.l2.clientmod.io.ObjectInputBuffer;
 import acmi.l2.clientmod.io.ObjectOutput;
 import acmi.l2.clientmod.io.*;
 import acmi.l2.clientmod.unreal.annotation.Bytecode;
 import acmi.l2.clientmod.unreal.annotation.NameRef;
 import acmi.l2.clientmod.unreal.annotation.ObjectRef;
 import acmi.l2.clientmod.unreal.bytecode.BytecodeContext;
+import acmi.l2.clientmod.unreal.bytecode.RawBytecode;
 import acmi.l2.clientmod.unreal.bytecode.TokenSerializerFactory;
 import acmi.l2.clientmod.unreal.bytecode.token.Token;
 import acmi.l2.clientmod.unreal.core.Object;
 import acmi.l2.clientmod.unreal.core.Struct;
+import acmi.l2.clientmod.unreal.core.Property;
+import acmi.l2.clientmod.unreal.properties.L2Property;
 import acmi.l2.clientmod.unreal.properties.PropertiesUtil;
-import acmi.l2.clientmod.unreal.util.InvalidationListener;
-import acmi.l2.clientmod.unreal.util.ObservableSet;
-import acmi.l2.clientmod.unreal.util.ObservableSetWrapper;
+import acmi.l2.clientmod.unreal.properties.PropertyTemplates;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 
 import java.io.*;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @SuppressWarnings("unchecked")
-public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealRuntimeContext> {
+public class UnrealSerializerFactory extends BytecodeSerializerFactory<UnrealRuntimeContext> implements AutoCloseable {
     private static final Logger log = Logger.getLogger(UnrealSerializerFactory.class.getName());
 
     private static final String LOAD_THREAD_NAME = "Unreal loader";
-    private static final int LOAD_THREAD_STACK_SIZE = loadThreadStackSize();
-
-    private static int loadThreadStackSize() {
-        try {
-            return Integer.parseInt(System.getProperty("L2unreal.loadThreadStackSize", "8000000"));
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
+    private static final int LOAD_THREADS = Math.max(1, Integer.getInteger("L2unreal.loadThreads", Runtime.getRuntime().availableProcessors()));
+    private static final long LOAD_THREAD_KEEP_ALIVE = 10;
+    private static final boolean LAZY_BYTECODE = Boolean.getBoolean("L2unreal.lazyBytecode");
+    private static final int OBJECT_BUDGET = Integer.getInteger("L2unreal.objectBudget", 0);
 
     public static final String unrealClassesPackage = "acmi.l2.clientmod.unreal";
 
@@ -73,19 +73,73 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
             c.equalsIgnoreCase("Core.State") ||
             c.equalsIgnoreCase("Core.Class");
 
-    private final Map<String, Object> objects = new HashMap<>();
-    private final Map<Integer, acmi.l2.clientmod.unreal.core.Function> nativeFunctions = new HashMap<>();
-    private final ObservableSet<String> loaded = new ObservableSetWrapper<>(new HashSet<>());
+    private final ObjectRegistry<LoadTask> objects = new ObjectRegistry<>(
+            task -> task.entry,
+            task -> !(task.obj instanceof acmi.l2.clientmod.unreal.core.Field),
+            task -> task.closed);
+    private final Map<Integer, acmi.l2.clientmod.unreal.core.Function> nativeFunctions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> loadedProperties = new ConcurrentHashMap<>();
+    private final Map<String, PropertyTemplates> propertyTemplates = new ConcurrentHashMap<>();
+    private final Map<String, Map<Property, java.lang.Object>> defaultValues = new ConcurrentHashMap<>();
+    private final TokenSerializerFactory tokenSerializerFactory = new TokenSerializerFactory();
+
+    /**
+     * Loads running on the current thread, innermost first.
+     */
+    private final ThreadLocal<Deque<LoadTask>> loading = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Map<Thread, LoadTask> waiting = new HashMap<>();
 
     @Getter
     private final Env environment;
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> new Thread(null, r, LOAD_THREAD_NAME, LOAD_THREAD_STACK_SIZE) {{
-        setDaemon(true);
-    }});
+    /**
+     * When set, struct scripts are kept as {@link RawBytecode} and decoded on first {@link Struct#getBytecode()}.
+     */
+    @Getter
+    @Setter
+    private volatile boolean lazyBytecode = LAZY_BYTECODE;
+
+    /**
+     * Maximum number of loaded objects other than fields, structs and classes to keep, least recently
+     * used ones beyond it are dropped and read again when requested. 0 keeps everything.
+     */
+    public int getObjectBudget() {
+        return objects.getBudget();
+    }
+
+    public void setObjectBudget(int objectBudget) {
+        objects.setBudget(objectBudget);
+    }
+
+    /**
+     * Loader pool of {@link #loadAsync}. Idle threads exit after a while, so a factory that is never
+     * {@link #close() closed} does not keep them parked.
+     */
+    private final ThreadPoolExecutor executorService = loaderPool();
+
+    private static ThreadPoolExecutor loaderPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(LOAD_THREADS, LOAD_THREADS,
+                LOAD_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name(LOAD_THREAD_NAME + "-", 0).daemon().factory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
 
     public UnrealSerializerFactory(@NonNull Env environment) {
-        this.environment = new EnvironmentWrapper(environment);
+        this.environment = new EnvironmentWrapper(environment, pckg -> {
+            invalidateStructs(pckg);
+            hierarchy.invalidate(pckg);
+            objects.invalidate(pckg);
+        });
+        this.objects.setBudget(OBJECT_BUDGET);
+    }
+
+    /**
+     * Stops the loader pool, loads already scheduled still finish. {@link #loadAsync} is rejected afterwards.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
     }
 
     @Override
@@ -95,73 +149,211 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
                 UnrealRuntimeContext context = objectInput.getContext();
                 int objRef = objectInput.readCompactInt();
                 UnrealPackage.Entry entry = context.getUnrealPackage().objectReference(objRef);
-                return getOrCreateObject(entry);
+                return reference(entry);
             };
         }
         return super.createInstantiator(clazz);
     }
 
+    /**
+     * Returns the object with everything it references loaded. References back to
+     * objects still being read by the current thread are returned as is.
+     */
     public Object getOrCreateObject(UnrealPackage.Entry packageLocalEntry) throws UncheckedIOException {
         if (packageLocalEntry == null) {
             return null;
         }
 
-        String key = keyFor(packageLocalEntry);
-        if (!objects.containsKey(key)) {
-            log.finest(() -> String.format("Loading %s", packageLocalEntry));
+        LoadTask task = task(packageLocalEntry);
+        require(task);
+        return task.obj;
+    }
 
-            UnrealPackage.ExportEntry entry;
-            try {
-                entry = resolveExportEntry(packageLocalEntry).orElse(null);
-                if (entry != null) {
-                    Class<? extends Object> clazz = getClass(entry.getFullClassName());
-                    Object obj = clazz.newInstance();
-                    objects.put(key, obj);
-                    Runnable load = () -> load(obj, entry);
-                    if (LOAD_THREAD_NAME.equals(Thread.currentThread().getName())) {
-                        load.run();
-                    } else {
-                        executorService.submit(load).get();
-                    }
-                } else {
-                    create(packageLocalEntry.getObjectFullName(), packageLocalEntry.getFullClassName());
+    /**
+     * Loads {@code entries} on the loader pool. Each class or struct is scheduled
+     * once its super struct and outer object from the same collection are loaded,
+     * so independent subtrees are read in parallel.
+     */
+    public CompletableFuture<Void> loadAsync(@NonNull Collection<? extends UnrealPackage.ExportEntry> entries) {
+        Map<String, UnrealPackage.ExportEntry> graph = new LinkedHashMap<>();
+        entries.forEach(entry -> graph.putIfAbsent(ObjectRegistry.nameKey(entry), entry));
+
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        graph.keySet().forEach(key -> futures.put(key, new CompletableFuture<>()));
+        graph.forEach((key, entry) -> {
+            CompletableFuture<?>[] dependencies = Stream.of(entry.getObjectSuperClass(), entry.getObjectPackage())
+                    .filter(Objects::nonNull)
+                    .map(ObjectRegistry::nameKey)
+                    .filter(k -> !k.equals(key))
+                    .map(futures::get)
+                    .filter(Objects::nonNull)
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(dependencies)
+                    .thenRunAsync(() -> getOrCreateObject(entry), executorService)
+                    .whenComplete((v, e) -> {
+                        if (e == null) {
+                            futures.get(key).complete(null);
+                        } else {
+                            futures.get(key).completeExceptionally(e);
+                        }
+                    });
+        });
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+    }
+
+    private Object reference(UnrealPackage.Entry packageLocalEntry) {
+        Deque<LoadTask> active = loading.get();
+        if (packageLocalEntry == null || active.isEmpty()) {
+            return getOrCreateObject(packageLocalEntry);
+        }
+
+        LoadTask task = task(packageLocalEntry);
+        active.peek().references.add(task);
+        return task.obj;
+    }
+
+    private LoadTask task(UnrealPackage.Entry packageLocalEntry) {
+        LoadTask task = objects.getReference(packageLocalEntry);
+        if (task != null) {
+            return task;
+        }
+
+        task = objects.getByName(packageLocalEntry);
+        if (task != null) {
+            return task;
+        }
+
+        log.finest(() -> String.format("Loading %s", packageLocalEntry));
+
+        LoadTask created;
+        long key;
+        try {
+            UnrealPackage.ExportEntry entry = resolveExportEntry(packageLocalEntry).orElse(null);
+            if (entry != null) {
+                key = objects.key(entry);
+                task = objects.get(entry);
+                if (task != null) {
+                    return objects.putIfAbsent(packageLocalEntry, key, task);
                 }
-            } catch (Throwable e) {
-                throw new IllegalStateException(e);
+                Class<? extends Object> clazz = getClass(entry.getFullClassName());
+                created = new LoadTask(clazz.newInstance(), entry);
+            } else {
+                key = objects.dummyKey(ObjectRegistry.nameKey(packageLocalEntry));
+                created = LoadTask.loaded(create(packageLocalEntry.getObjectFullName(), packageLocalEntry.getFullClassName()));
             }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
         }
-        return objects.get(key);
-    }
 
-    private String keyFor(UnrealPackage.Entry entry) {
-        return (entry.getObjectFullName() + "_" + entry.getFullClassName()).toLowerCase();
+        return objects.putIfAbsent(packageLocalEntry, key, created);
     }
 
-    private void create(String objName, String objClass) {
-        log.fine(() -> String.format("Create dummy %s[%s]", objName, objClass));
+    /**
+     * Loads {@code root} and everything reachable from it. Pending loads are kept on
+     * an explicit work stack instead of the call stack, so reference chains of any
+     * length don't need a large thread stack.
+     */
+    private void require(LoadTask root) {
+        if (root.closed) {
+            return;
+        }
 
-        UnrealPackage.Entry entry = new UnrealPackage.Entry(null, 0, 0, 0) {
-            @Override
-            public String getObjectFullName() {
-                return objName;
+        Deque<LoadTask> work = new ArrayDeque<>();
+        Set<LoadTask> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<LoadTask, List<LoadTask>> referrers = new IdentityHashMap<>();
+        List<LoadTask> open = new ArrayList<>();
+
+        work.push(root);
+        while (!work.isEmpty()) {
+            LoadTask task = work.pop();
+            if (task.closed || !seen.add(task)) {
+                continue;
             }
 
-            @Override
-            public String getFullClassName() {
-                return objClass;
+            if (task.claim()) {
+                run(task);
+            } else if (!task.done.isDone()) {
+                if (task.owner.get() == Thread.currentThread()) {
+                    // still being loaded up the call stack, its references are known once it is read
+                    open.add(task);
+                    if (!task.read) {
+                        continue;
+                    }
+                } else if (!await(task)) {
+                    open.add(task);
+                    continue;
+                }
+            }
+            if (task.done.isCompletedExceptionally()) {
+                try {
+                    task.done.join();
+                } catch (CompletionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
             }
 
-            @Override
-            public int getObjectReference() {
-                return 0;
+            for (ListIterator<LoadTask> it = task.references.listIterator(task.references.size()); it.hasPrevious(); ) {
+                LoadTask reference = it.previous();
+                referrers.computeIfAbsent(reference, k -> new ArrayList<>()).add(task);
+                work.push(reference);
             }
+        }
 
-            @Override
-            public List getTable() {
-                return null;
+        Set<LoadTask> reachesOpen = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (!open.isEmpty()) {
+            LoadTask task = open.remove(open.size() - 1);
+            if (reachesOpen.add(task)) {
+                open.addAll(referrers.getOrDefault(task, Collections.emptyList()));
             }
-        };
-        objects.put(keyFor(entry), new acmi.l2.clientmod.unreal.core.Class() {
+        }
+        seen.stream()
+                .filter(task -> !reachesOpen.contains(task))
+                .forEach(task -> task.closed = true);
+    }
+
+    private void run(LoadTask task) {
+        Deque<LoadTask> active = loading.get();
+        active.push(task);
+        try {
+            load(task);
+            task.done.complete(task.obj);
+        } catch (Throwable e) {
+            task.done.completeExceptionally(e);
+        } finally {
+            active.pop();
+        }
+    }
+
+    /**
+     * Waits for a load owned by another thread.
+     *
+     * @return false if waiting would deadlock, the object stays partially loaded then
+     */
+    private boolean await(LoadTask task) {
+        Thread current = Thread.currentThread();
+        synchronized (waiting) {
+            for (LoadTask t = task; t != null; t = waiting.get(t.owner.get())) {
+                if (t.owner.get() == current) {
+                    return false;
+                }
+            }
+            waiting.put(current, task);
+        }
+        try {
+            task.done.join();
+        } catch (CompletionException | CancellationException ignore) {
+        } finally {
+            synchronized (waiting) {
+                waiting.remove(current);
+            }
+        }
+        return true;
+    }
+
+    private Object create(String objName, String objClass) {
+        log.fine(() -> String.format("Create dummy %s[%s]", objName, objClass));
+
+        return new acmi.l2.clientmod.unreal.core.Class() {
             @Override
             public String getFullName() {
                 return objName;
@@ -171,7 +363,7 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
             public String getClassFullName() {
                 return objClass;
             }
-        });
+        };
     }
 
     /**
@@ -231,7 +423,7 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         } else if (Object.class.isAssignableFrom(type) &&
                 Objects.nonNull(getAnnotation.apply(ObjectRef.class))) {
             read.add((object, dataInput) -> setter.accept(object, () ->
-                    getOrCreateObject(dataInput.getContext().getUnrealPackage().objectReference(dataInput.readCompactInt()))));
+                    reference(dataInput.getContext().getUnrealPackage().objectReference(dataInput.readCompactInt()))));
             write.add((object, dataOutput) -> {
                 Object obj = (Object) getter.apply(object);
                 dataOutput.writeCompactInt(obj == null || obj.entry == null ? 0 : dataOutput.getContext().getUnrealPackage().objectReferenceByName(obj.entry.getObjectFullName(), c -> c.equalsIgnoreCase(obj.entry.getFullClassName())));
@@ -240,24 +432,22 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
                 type.getComponentType() == Token.class &&
                 Objects.nonNull(getAnnotation.apply(Bytecode.class))) {
             read.add((object, dataInput) -> {
-                BytecodeContext context = new BytecodeContext(dataInput.getContext());
-                SerializerFactory<BytecodeContext> serializerFactory = new TokenSerializerFactory();
-                ObjectInput<BytecodeContext> input = ObjectInput.objectInput(dataInput, serializerFactory, context);
-                int size = input.readInt();
-                int readSize = 0;
-                List<Token> tokens = new ArrayList<>();
-                while (readSize < size) {
-                    Token token = input.readObject(Token.class);
-                    readSize += token.getSize(context);
-                    tokens.add(token);
+                if (lazyBytecode && object instanceof Struct && dataInput instanceof ObjectInputBuffer) {
+                    ((Struct) object).rawBytecode = skipBytecode((ObjectInputBuffer<UnrealRuntimeContext>) dataInput);
+                    setter.accept(object, () -> null);
+                } else {
+                    setter.accept(object, () -> readBytecode(dataInput));
                 }
-                setter.accept(object, () -> tokens.toArray(new Token[0]));
             });
             write.add((object, dataOutput) -> {
-                BytecodeContext context = new BytecodeContext(dataOutput.getContext());
-                SerializerFactory<BytecodeContext> serializerFactory = new TokenSerializerFactory();
-                ObjectOutput<BytecodeContext> output = ObjectOutput.objectOutput(dataOutput, serializerFactory, context);
                 Token[] array = (Token[]) getter.apply(object);
+                if (array == null && object instanceof Struct && ((Struct) object).rawBytecode != null) {
+                    ((Struct) object).rawBytecode.writeTo(dataOutput);
+                    return;
+                }
+
+                BytecodeContext context = new BytecodeContext(dataOutput.getContext());
+                ObjectOutput<BytecodeContext> output = ObjectOutput.objectOutput(dataOutput, tokenSerializerFactory, context);
                 output.writeInt(array.length);
                 for (Token token: array) {
                     output.write(token);
@@ -268,9 +458,65 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         }
     }
 
-    private void load(Object obj, UnrealPackage.ExportEntry entry) {
-        ObjectInput<UnrealRuntimeContext> input = new ObjectInputStream<UnrealRuntimeContext>(
-                new ByteArrayInputStream(entry.getObjectRawDataExternally()),
+    private Token[] readBytecode(ObjectInput<UnrealRuntimeContext> dataInput) throws UncheckedIOException {
+        BytecodeContext context = new BytecodeContext(dataInput.getContext());
+        ObjectInput<BytecodeContext> input = ObjectInput.objectInput(dataInput, tokenSerializerFactory, context);
+        int size = input.readInt();
+        int readSize = 0;
+        List<Token> tokens = new ArrayList<>();
+        while (readSize < size) {
+            Token token = input.readObject(Token.class);
+            readSize += token.getSize(context);
+            tokens.add(token);
+        }
+        return tokens.toArray(new Token[0]);
+    }
+
+    /**
+     * Steps over the script without building tokens and keeps its bytes for {@link Struct#getBytecode()}.
+     */
+    private RawBytecode skipBytecode(ObjectInputBuffer<UnrealRuntimeContext> dataInput) throws UncheckedIOException {
+        UnrealRuntimeContext runtimeContext = dataInput.getContext();
+        Charset charset = dataInput.getCharset();
+        int offset = dataInput.getPosition();
+        int start = dataInput.getBuffer().position();
+
+        BytecodeContext context = new BytecodeContext(runtimeContext);
+        int size = dataInput.readInt();
+        int readSize = 0;
+        while (readSize < size) {
+            readSize += TokenSerializerFactory.skipToken(dataInput, context);
+        }
+
+        byte[] data = new byte[dataInput.getBuffer().position() - start];
+        dataInput.getBuffer().get(start, data);
+        return new RawBytecode(data, offset, raw -> readBytecode(
+                new ObjectInputBuffer<>(raw.getBuffer(), charset, raw.getOffset(), this, runtimeContext)));
+    }
+
+    @Override
+    protected int fixedSize(Class<?> type, Function<Class<? extends Annotation>, Annotation> getAnnotation) {
+        if (Object.class.isAssignableFrom(type) ||
+                getAnnotation.apply(NameRef.class) != null ||
+                getAnnotation.apply(ObjectRef.class) != null) {
+            return -1;
+        }
+        return super.fixedSize(type, getAnnotation);
+    }
+
+    @Override
+    protected boolean isCompilable(Field field) {
+        return super.isCompilable(field) &&
+                !field.isAnnotationPresent(NameRef.class) &&
+                !field.isAnnotationPresent(ObjectRef.class) &&
+                !field.isAnnotationPresent(Bytecode.class);
+    }
+
+    private void load(LoadTask task) {
+        Object obj = task.obj;
+        UnrealPackage.ExportEntry entry = task.entry;
+        ObjectInput<UnrealRuntimeContext> input = new ObjectInputBuffer<UnrealRuntimeContext>(
+                ByteBuffer.wrap(entry.getObjectRawDataExternally()),
                 entry.getUnrealPackage().getFile().getCharset(),
                 entry.getOffset(),
                 this,
@@ -293,6 +539,7 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
 
         Serializer serializer = forClass(obj.getClass());
         serializer.readObject(obj, input);
+        task.read = true;
 
         if (obj instanceof acmi.l2.clientmod.unreal.core.Function) {
             acmi.l2.clientmod.unreal.core.Function func = (acmi.l2.clientmod.unreal.core.Function) obj;
@@ -302,36 +549,23 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         }
 
         if (entry.getFullClassName().equalsIgnoreCase("Core.Class")) {
-            Runnable loadProps = () -> {
-                obj.properties.addAll(PropertiesUtil.readProperties(input, obj.getFullName()));
-                loaded.add(entry.getObjectFullName());
-                log.finest(() -> entry.getObjectFullName() + " properties loaded");
-            };
-            if (entry.getObjectSuperClass() != null) {
-                String superClass = entry.getObjectSuperClass().getObjectFullName();
-
-                if (loaded.contains(superClass)) {
-                    loadProps.run();
-                } else {
-                    AtomicInteger ai = new AtomicInteger(0);
-                    Consumer<InvalidationListener> c = il -> {
-                        if (loaded.contains(superClass) && ai.getAndIncrement() == 0) {
-                            loaded.removeListener(il);
-                            loadProps.run();
+            CompletableFuture<Void> superProperties = entry.getObjectSuperClass() != null ?
+                    loadedProperties(entry.getObjectSuperClass().getObjectFullName()) :
+                    CompletableFuture.completedFuture(null);
+            superProperties
+                    .thenRun(() -> obj.properties.addAll(PropertiesUtil.readProperties(input, obj.getFullName())))
+                    .whenComplete((v, e) -> {
+                        if (e == null) {
+                            // defaults of this class and its subclasses include these properties
+                            defaultValues.keySet().removeIf(clazz -> isSubclass(entry.getObjectFullName(), clazz));
+                            loadedProperties(entry.getObjectFullName()).complete(null);
+                            log.finest(() -> entry.getObjectFullName() + " properties loaded");
+                        } else {
+                            // fails subclasses waiting for these properties too
+                            loadedProperties(entry.getObjectFullName()).completeExceptionally(e);
+                            log.log(Level.WARNING, e, () -> entry.getObjectFullName() + " properties not loaded");
                         }
-                    };
-                    InvalidationListener il = new InvalidationListener() {
-                        @Override
-                        public void invalidated(acmi.l2.clientmod.unreal.util.Observable observable) {
-                            c.accept(this);
-                        }
-                    };
-                    loaded.addListener(il);
-                    c.accept(il);
-                }
-            } else {
-                loadProps.run();
-            }
+                    });
         }
 
         if (!(obj instanceof acmi.l2.clientmod.unreal.core.Class)) {
@@ -353,6 +587,37 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         log.finest(() -> entry.getObjectFullName() + " loaded");
     }
 
+    private CompletableFuture<Void> loadedProperties(String clazz) {
+        return loadedProperties.computeIfAbsent(clazz.toLowerCase(), k -> new CompletableFuture<>());
+    }
+
+    /**
+     * Drops property templates, default values and loaded properties of structs of {@code pckg}
+     * and of structs inheriting from them, they refer to fields that are read again.
+     */
+    private void invalidateStructs(String pckg) {
+        Map<String, Boolean> known = new HashMap<>();
+        Predicate<String> stale = struct -> dependsOn(struct, pckg, known);
+        propertyTemplates.keySet().removeIf(stale);
+        defaultValues.keySet().removeIf(stale);
+        loadedProperties.keySet().removeIf(stale);
+    }
+
+    private boolean dependsOn(String struct, String pckg, Map<String, Boolean> known) {
+        Boolean result = known.get(struct);
+        if (result == null) {
+            if (struct.length() > pckg.length() && struct.charAt(pckg.length()) == '.' &&
+                    struct.regionMatches(true, 0, pckg, 0, pckg.length())) {
+                result = true;
+            } else {
+                Optional<String> superStruct = findSuperClass(struct);
+                result = superStruct != null && superStruct.isPresent() && dependsOn(superStruct.get(), pckg, known);
+            }
+            known.put(struct, result);
+        }
+        return result;
+    }
+
     public Optional<Struct> getStruct(String name) {
         try {
             return Optional.of((Struct) getOrCreateObject(name, IS_STRUCT));
@@ -362,14 +627,102 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         }
     }
 
+    /**
+     * Property templates of {@code structName} and its super structs. The table is cached
+     * once every struct of the tree is completely loaded.
+     */
+    public PropertyTemplates getPropertyTemplates(@NonNull String structName) {
+        String key = structName.toLowerCase();
+        PropertyTemplates templates = propertyTemplates.get(key);
+        if (templates != null) {
+            return templates;
+        }
+
+        List<Property> properties = new ArrayList<>();
+        boolean loaded = true;
+        while (structName != null) {
+            Struct struct = getStruct(structName).orElse(new Struct());
+            loaded &= isLoaded(struct);
+            for (acmi.l2.clientmod.unreal.core.Field field : struct) {
+                if (field instanceof Property) {
+                    properties.add((Property) field);
+                }
+            }
+            structName = struct.entry != null && struct.entry.getObjectSuperClass() != null ?
+                    struct.entry.getObjectSuperClass().getObjectFullName() : null;
+        }
+
+        templates = new PropertyTemplates(properties);
+        if (loaded) {
+            PropertyTemplates cached = propertyTemplates.putIfAbsent(key, templates);
+            if (cached != null) {
+                templates = cached;
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Default property values of class {@code structName} by template, values of subclasses
+     * override superclass ones. Empty if {@code structName} is not a class. The map is cached
+     * once properties of every class of the tree are loaded and must not be modified, struct
+     * values should be copied with {@link PropertiesUtil#cloneStruct}.
+     */
+    public Map<Property, java.lang.Object> getDefaultValues(@NonNull String structName) {
+        String key = structName.toLowerCase();
+        Map<Property, java.lang.Object> defaults = defaultValues.get(key);
+        if (defaults != null) {
+            return defaults;
+        }
+
+        Optional<acmi.l2.clientmod.unreal.core.Class> classOpt = getStruct(structName)
+                .filter(struct -> struct instanceof acmi.l2.clientmod.unreal.core.Class)
+                .map(struct -> (acmi.l2.clientmod.unreal.core.Class) struct);
+        defaults = new HashMap<>();
+        boolean loaded = true;
+        if (classOpt.isPresent()) {
+            for (acmi.l2.clientmod.unreal.core.Class clazz : getStructTree(classOpt.get())) {
+                loaded &= loadedProperties(clazz.entry.getObjectFullName()).isDone();
+                for (L2Property property : clazz.properties) {
+                    defaults.put(property.getTemplate(), property.getAt(0));
+                }
+            }
+        }
+
+        defaults = Collections.unmodifiableMap(defaults);
+        if (loaded) {
+            Map<Property, java.lang.Object> cached = defaultValues.putIfAbsent(key, defaults);
+            if (cached != null) {
+                defaults = cached;
+            }
+        }
+        return defaults;
+    }
+
+    private boolean isLoaded(Object obj) {
+        if (obj.entry == null) {
+            return true;
+        }
+        LoadTask task = objects.get(obj.entry);
+        return task == null || task.closed;
+    }
+
     /**
      * @return superClass or null
      */
     public String getSuperClass(@NonNull String clazz) {
+        Optional<String> superClass = findSuperClass(clazz);
+        return superClass != null ? superClass.orElse(null) : null;
+    }
+
+    /**
+     * @return superClass, empty for a root class or null if {@code clazz} is unknown
+     */
+    private Optional<String> findSuperClass(String clazz) {
         Optional<UnrealPackage.ExportEntry> opt = getExportEntry(clazz, IS_STRUCT);
         if (opt.isPresent()) {
-            return opt.get().getObjectSuperClass() != null ?
-                    opt.get().getObjectSuperClass().getObjectFullName() : null;
+            return Optional.ofNullable(opt.get().getObjectSuperClass())
+                    .map(UnrealPackage.Entry::getObjectFullName);
         } else {
             try {
                 Class<?> javaClass = Class.forName(unrealClassesPackage + "." + unrealClassNameToJavaClassName(clazz));
@@ -377,29 +730,33 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
                 String javaSuperClassName = javaSuperClass.getName();
                 if (javaSuperClassName.contains(unrealClassesPackage)) {
                     javaSuperClassName = javaSuperClassName.substring(unrealClassesPackage.length() + 1);
-                    return javaSuperClassName.substring(0, 1).toUpperCase() + javaSuperClassName.substring(1);
+                    return Optional.of(javaSuperClassName.substring(0, 1).toUpperCase() + javaSuperClassName.substring(1));
                 }
+                return Optional.empty();
             } catch (ClassNotFoundException ignore) {
             }
         }
         return null;
     }
 
-    private final Map<String, Boolean> isSubclassCache = new HashMap<>();
+    private final ClassHierarchy hierarchy = new ClassHierarchy(this::findSuperClass);
 
     public boolean isSubclass(@NonNull String parent, @NonNull String child) {
         if (parent.equalsIgnoreCase(child)) {
             return true;
         }
 
-        String k = parent + "@" + child;
-        synchronized (isSubclassCache) {
-            if (!isSubclassCache.containsKey(k)) {
-                child = getSuperClass(child);
-                isSubclassCache.put(k, child != null && isSubclass(parent, child));
+        ClassHierarchy.Node childNode = hierarchy.node(child);
+        if (childNode == null) {
+            for (String c = getSuperClass(child); c != null; c = getSuperClass(c)) {
+                if (parent.equalsIgnoreCase(c)) {
+                    return true;
+                }
             }
-            return isSubclassCache.get(k);
+            return false;
         }
+        ClassHierarchy.Node parentNode = hierarchy.get(parent);
+        return parentNode != null && childNode.isSubclassOf(parentNode);
     }
 
     public <T extends Struct> List<T> getStructTree(@NonNull T struct) {
@@ -418,12 +775,58 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
         return Optional.ofNullable(nativeFunctions.get(index));
     }
 
+    private static final class LoadTask {
+        final Object obj;
+        final UnrealPackage.ExportEntry entry;
+        final CompletableFuture<Object> done = new CompletableFuture<>();
+        final AtomicReference<Thread> owner = new AtomicReference<>();
+        /**
+         * Objects met while reading this one, loaded after it from the work stack.
+         * Written only by the owner before {@link #done} completes.
+         */
+        final List<LoadTask> references = new ArrayList<>();
+        volatile boolean read;
+        volatile boolean closed;
+
+        LoadTask(Object obj, UnrealPackage.ExportEntry entry) {
+            this.obj = obj;
+            this.entry = entry;
+        }
+
+        static LoadTask loaded(Object obj) {
+            LoadTask task = new LoadTask(obj, null);
+            task.done.complete(obj);
+            task.closed = true;
+            return task;
+        }
+
+        boolean claim() {
+            return !done.isDone() && owner.compareAndSet(null, Thread.currentThread());
+        }
+    }
+
+    /**
+     * Loader threads share the wrapped environment, calls to it are serialized unless its {@link Env#isThreadSafe()} is true.
+     */
     private static class EnvironmentWrapper implements Env {
         private final Env environment;
+        private final boolean threadSafe;
         private final Map<String, UnrealPackage> adds = new HashMap<>();
+        private final Consumer<String> invalidated;
 
-        public EnvironmentWrapper(@NonNull Env environment) {
+        public EnvironmentWrapper(@NonNull Env environment, @NonNull Consumer<String> invalidated) {
             this.environment = environment;
+            this.threadSafe = environment.isThreadSafe();
+            this.invalidated = invalidated;
+        }
+
+        private <T> T call(Supplier<T> call) {
+            if (threadSafe) {
+                return call.get();
+            }
+            synchronized (environment) {
+                return call.get();
+            }
         }
 
         @Override
@@ -438,27 +841,37 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
 
         @Override
         public Optional<UnrealPackage> getPackage(File f) {
-            return environment.getPackage(f);
+            return call(() -> environment.getPackage(f));
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
         }
 
         @Override
         public void markInvalid(String pckg) {
-            environment.markInvalid(pckg);
+            call(() -> {
+                environment.markInvalid(pckg);
+                return null;
+            });
+            invalidated.accept(pckg);
         }
 
         @Override
         public Stream<UnrealPackage> listPackages(String name) {
-            return appendCustomPackage(environment.listPackages(name), name);
+            List<UnrealPackage> packages = call(() -> environment.listPackages(name).collect(Collectors.toList()));
+            return appendCustomPackage(packages.stream(), name);
         }
 
         @Override
         public Stream<File> listFiles() {
-            return environment.listFiles();
+            return call(() -> environment.listFiles().collect(Collectors.toList())).stream();
         }
 
         @Override
         public Stream<File> getPackage(String name) {
-            return environment.getPackage(name);
+            return call(() -> environment.getPackage(name).collect(Collectors.toList())).stream();
         }
 
         @Override
@@ -475,7 +888,7 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
                 return entryOptional;
             }
 
-            return environment.getExportEntry(fullName, fullClassName);
+            return call(() -> environment.getExportEntry(fullName, fullClassName));
         }
 
         private Stream<UnrealPackage> appendCustomPackage(Stream<UnrealPackage> stream, String name) {
@@ -484,24 +897,25 @@ public class UnrealSerializerFactory extends ReflectionSerializerFactory<UnrealR
             }
 
             name = canonizeName(name);
-            if (!adds.containsKey(name)) {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                try (InputStream is = getClass().getResourceAsStream("/" + name + ".u")) {
-                    byte[] buf = new byte[1024];
-                    int r;
-                    while ((r = is.read(buf)) != -1) {
-                        baos.write(buf, 0, r);
+            synchronized (adds) {
+                if (!adds.containsKey(name)) {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    try (InputStream is = getClass().getResourceAsStream("/" + name + ".u")) {
+                        byte[] buf = new byte[1024];
+                        int r;
+                        while ((r = is.read(buf)) != -1) {
+                            baos.write(buf, 0, r);
+                        }
+                    } catch (IOException e) {
+                        throw new UnrealException(e);
                     }
-                } catch (IOException e) {
-                    throw new UnrealException(e);
-                }
 
-                try (UnrealPackage up = new UnrealPackage(new RandomAccessMemory(name, baos.toByteArray(), UnrealPackage.getDefaultCharset()))) {
-                    adds.put(name, up);
+                    try (UnrealPackage up = new UnrealPackage(new RandomAccessMemory(name, baos.toByteArray(), UnrealPackage.getDefaultCharset()))) {
+                        adds.put(name, up);
+                    }
                 }
+                return Stream.concat(Stream.of(adds.get(name)), stream);
             }
-
-            return Stream.concat(Stream.of(adds.get(name)), stream);
         }
 
         private String canonizeName(String name) {
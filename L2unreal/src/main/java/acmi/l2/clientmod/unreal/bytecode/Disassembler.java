@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.bytecode;
+
+import acmi.l2.clientmod.io.UnrealPackage;
+import acmi.l2.clientmod.unreal.Environment;
+import acmi.l2.clientmod.unreal.UnrealException;
+import acmi.l2.clientmod.unreal.UnrealRuntimeContext;
+import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
+import acmi.l2.clientmod.unreal.bytecode.token.Token;
+import acmi.l2.clientmod.unreal.core.Struct;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Dumps the script of every struct, function, state and class of a package.
+ * <p>
+ * Structs are loaded once with {@link UnrealSerializerFactory#loadAsync}, their bytecode is then decoded
+ * and printed in parallel. Works best with {@link UnrealSerializerFactory#setLazyBytecode lazy bytecode},
+ * otherwise scripts are already decoded by the loader.
+ */
+public class Disassembler {
+    /**
+     * Receives results as soon as each struct is done, from several threads at once.
+     */
+    public interface Output {
+        /**
+         * @param text one token per line
+         */
+        void bytecode(UnrealPackage.ExportEntry entry, String text);
+
+        void scriptText(UnrealPackage.ExportEntry entry, String text);
+    }
+
+    private final UnrealSerializerFactory serializerFactory;
+    private final Executor executor;
+    private final int parallelism;
+
+    public Disassembler(@NonNull UnrealSerializerFactory serializerFactory) {
+        this(serializerFactory, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism number of tasks submitted to {@code executor} per package
+     */
+    public Disassembler(@NonNull UnrealSerializerFactory serializerFactory, @NonNull Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.serializerFactory = serializerFactory;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public CompletableFuture<Void> disassemble(@NonNull UnrealPackage up, @NonNull Output output) {
+        List<UnrealPackage.ExportEntry> structs = up.getExportTable()
+                .stream()
+                .filter(e -> UnrealSerializerFactory.IS_STRUCT.test(e.getFullClassName()))
+                .collect(Collectors.toList());
+        return serializerFactory.loadAsync(structs)
+                .thenCompose(v -> {
+                    AtomicInteger next = new AtomicInteger();
+                    Runnable worker = () -> {
+                        for (int i = next.getAndIncrement(); i < structs.size(); i = next.getAndIncrement()) {
+                            disassemble(structs.get(i), output);
+                        }
+                    };
+                    return CompletableFuture.allOf(IntStream.range(0, Math.min(parallelism, structs.size()))
+                            .mapToObj(i -> CompletableFuture.runAsync(worker, executor))
+                            .toArray(CompletableFuture[]::new));
+                });
+    }
+
+    private void disassemble(UnrealPackage.ExportEntry entry, Output output) {
+        try {
+            Struct struct = (Struct) serializerFactory.getOrCreateObject(entry);
+            Token[] bytecode = struct.getBytecode();
+            if (bytecode != null && bytecode.length > 0) {
+                output.bytecode(entry, toString(bytecode, new UnrealRuntimeContext(entry, serializerFactory)));
+            }
+            if (struct.scriptText != null && struct.scriptText.text != null) {
+                output.scriptText(entry, struct.scriptText.text);
+            }
+        } catch (RuntimeException e) {
+            throw new UnrealException(String.format("Couldn't disassemble %s", entry), e);
+        }
+    }
+
+    public static String toString(Token[] bytecode, UnrealRuntimeContext context) {
+        StringBuilder sb = new StringBuilder();
+        for (Token token : bytecode) {
+            sb.append(token.toString(context)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes {@code <full name>.txt} files with bytecode and {@code <full name>.uc} files with script text.
+     */
+    public static Output toDirectory(@NonNull Path dir) {
+        return new Output() {
+            @Override
+            public void bytecode(UnrealPackage.ExportEntry entry, String text) {
+                write(dir.resolve(entry.getObjectFullName() + ".txt"), text);
+            }
+
+            @Override
+            public void scriptText(UnrealPackage.ExportEntry entry, String text) {
+                write(dir.resolve(entry.getObjectFullName() + ".uc"), text);
+            }
+
+            private void write(Path file, String text) {
+                try {
+                    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Disassembler <package file> <output dir> [system dir]");
+            System.exit(1);
+        }
+
+        File file = new File(args[0]);
+        Path dir = Paths.get(args[1]);
+        File systemDir = args.length > 2 ? new File(args[2]) : file.getAbsoluteFile().getParentFile();
+
+        Files.createDirectories(dir);
+        try (UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(new Environment(systemDir, Collections.singletonList("*.u")));
+             UnrealPackage up = new UnrealPackage(file, true)) {
+            serializerFactory.setLazyBytecode(true);
+            new Disassembler(serializerFactory).disassemble(up, toDirectory(dir)).join();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.bytecode;
+
+import acmi.l2.clientmod.io.DataOutput;
+import acmi.l2.clientmod.unreal.bytecode.token.Token;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Script of a struct as stored in the package: the size header followed by the serialized tokens.
+ */
+public final class RawBytecode {
+    private final byte[] data;
+    @Getter
+    private final int offset;
+    private final Function<RawBytecode, Token[]> decoder;
+
+    public RawBytecode(@NonNull byte[] data, int offset, @NonNull Function<RawBytecode, Token[]> decoder) {
+        this.data = data;
+        this.offset = offset;
+        this.decoder = decoder;
+    }
+
+    public int getLength() {
+        return data.length;
+    }
+
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    public void writeTo(DataOutput output) throws UncheckedIOException {
+        output.writeBytes(data);
+    }
+
+    public Token[] decode() {
+        return decoder.apply(this);
+    }
+}
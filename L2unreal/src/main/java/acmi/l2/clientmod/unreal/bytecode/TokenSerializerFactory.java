@@ -22,6 +22,9 @@
 package acmi.l2.clientmod.unreal.bytecode;
 
 import acmi.l2.clientmod.io.*;
+import acmi.l2.clientmod.io.annotation.Compact;
+import acmi.l2.clientmod.io.annotation.UByte;
+import acmi.l2.clientmod.io.annotation.UShort;
 import acmi.l2.clientmod.unreal.UnrealException;
 import acmi.l2.clientmod.unreal.bytecode.token.*;
 import acmi.l2.clientmod.unreal.bytecode.token.Context;
@@ -33,23 +36,30 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
-public class TokenSerializerFactory extends ReflectionSerializerFactory<BytecodeContext> {
+public class TokenSerializerFactory extends BytecodeSerializerFactory<BytecodeContext> {
     private static final Logger log = Logger.getLogger(TokenSerializerFactory.class.getName());
 
     private static final int EX_ExtendedNative = 0x60;
     private static final int EX_FirstNative = 0x70;
 
-    private static final Map<Integer, Class<? extends Token>> mainTokenTable = new HashMap<>();
-    private static final Map<Integer, Class<? extends Token>> conversionTokenTable = new HashMap<>();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Token.class);
+
+    /**
+     * Immutable opcode tables shared by all instances, replaced as a whole on {@link #register(Class)}.
+     */
+    private static volatile TokenTable tokenTable = TokenTable.empty();
 
     @Override
     protected Function<ObjectInput<BytecodeContext>, Object> createInstantiator(Class<?> clazz) {
@@ -61,10 +71,10 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
 
     private Token instantiate(ObjectInput<BytecodeContext> input) throws UncheckedIOException {
         int opcode = input.readUnsignedByte();
-        Map<Integer, Class<? extends Token>> table;
+        MethodHandle[] table;
         String tableName;
         if (input.getContext().isConversion()) {
-            table = conversionTokenTable;
+            table = tokenTable.conversion;
             tableName = "Conversion";
 
             input.getContext().changeConversion();
@@ -73,7 +83,7 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
                 return readNativeCall(input, opcode);
             }
 
-            table = mainTokenTable;
+            table = tokenTable.main;
             tableName = "Main";
 
             if (opcode == ConversionTable.OPCODE) {
@@ -81,20 +91,24 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
             }
         }
 
-        Class<? extends Token> tokenClass = table.get(opcode);
+        MethodHandle constructor = table[opcode];
 
-        if (tokenClass == null) {
+        if (constructor == null) {
             throw new UncheckedIOException(new IOException(String.format("Unknown token: %02x, table: %s", opcode, tableName)));
         }
 
         try {
-            return tokenClass.newInstance();
-        } catch (ReflectiveOperationException e) {
+            return (Token) constructor.invokeExact();
+        } catch (Throwable e) {
             throw new SerializerException(e);
         }
     }
 
     private Token readNativeCall(ObjectInput<BytecodeContext> input, int b) throws UncheckedIOException {
+        return new NativeFunctionCall(readNativeIndex(input, b));
+    }
+
+    private static int readNativeIndex(DataInput input, int b) throws UncheckedIOException {
         int nativeIndex = (b & 0xF0) == EX_ExtendedNative ?
                 ((b - EX_ExtendedNative) << 8) + input.readUnsignedByte() : b;
 
@@ -102,7 +116,145 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
             throw new UnrealException("Invalid native index: " + nativeIndex);
         }
 
-        return new NativeFunctionCall(nativeIndex);
+        return nativeIndex;
+    }
+
+    /**
+     * Advances the input past one serialized token without instantiating it.
+     *
+     * @return in-memory size of the skipped token, as {@link Token#getSize(BytecodeContext)} would report
+     */
+    public static int skipToken(DataInput input, BytecodeContext context) throws UncheckedIOException {
+        return skipToken(input, context, input.readUnsignedByte());
+    }
+
+    private static int skipToken(DataInput input, BytecodeContext context, int opcode) throws UncheckedIOException {
+        Class<? extends Token> tokenClass;
+        String tableName;
+        if (context.isConversion()) {
+            tokenClass = tokenTable.conversionClasses[opcode];
+            tableName = "Conversion";
+
+            context.changeConversion();
+        } else {
+            if (opcode >= EX_ExtendedNative) {
+                int nativeIndex = readNativeIndex(input, opcode);
+                return (nativeIndex > 0xff ? 2 : 1) + skipFunctionParams(input, context);
+            }
+
+            tokenClass = tokenTable.mainClasses[opcode];
+            tableName = "Main";
+
+            if (opcode == ConversionTable.OPCODE) {
+                context.changeConversion();
+            }
+        }
+
+        if (tokenClass == null) {
+            throw new UncheckedIOException(new IOException(String.format("Unknown token: %02x, table: %s", opcode, tableName)));
+        }
+
+        return SKIPPERS.get(tokenClass).skip(input, context);
+    }
+
+    private static int skipFunctionParams(DataInput input, BytecodeContext context) throws UncheckedIOException {
+        int size = 0;
+        do {
+            int opcode = input.readUnsignedByte();
+            boolean end = !context.isConversion() && tokenTable.mainClasses[opcode] == EndFunctionParams.class;
+            size += skipToken(input, context, opcode);
+            if (end) {
+                return size;
+            }
+        } while (true);
+    }
+
+    private static final ClassValue<Skipper> SKIPPERS = new ClassValue<Skipper>() {
+        @Override
+        protected Skipper computeValue(Class<?> type) {
+            return createSkipper(type);
+        }
+    };
+
+    private static Skipper createSkipper(Class<?> clazz) {
+        if (clazz == Case.class) {
+            return (input, context) -> {
+                int nextOffset = input.readUnsignedShort();
+                return 1 + 2 + (nextOffset != Case.DEFAULT ? skipToken(input, context) : 0);
+            };
+        } else if (clazz == LabelTable.class) {
+            return (input, context) -> {
+                int none = getNoneInd(context);
+                int size = 1;
+                int nameRef;
+                do {
+                    nameRef = input.readCompactInt();
+                    input.readUnsignedShort();
+                    input.readUnsignedShort();
+                    size += 8;
+                } while (nameRef != none);
+                return size;
+            };
+        }
+
+        List<Skipper> fields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) ||
+                    Modifier.isTransient(field.getModifiers()) ||
+                    field.isSynthetic()) {
+                continue;
+            }
+
+            Class<?> type = field.getType();
+            if (field.isAnnotationPresent(Compact.class)) {
+                fields.add((input, context) -> {
+                    input.readCompactInt();
+                    return 4;
+                });
+            } else if (field.isAnnotationPresent(UShort.class)) {
+                fields.add((input, context) -> {
+                    input.readUnsignedShort();
+                    return 2;
+                });
+            } else if (field.isAnnotationPresent(UByte.class)) {
+                fields.add((input, context) -> {
+                    input.readUnsignedByte();
+                    return 1;
+                });
+            } else if (type == Integer.TYPE || type == Float.TYPE) {
+                fields.add((input, context) -> {
+                    input.readInt();
+                    return 4;
+                });
+            } else if (type == String.class) {
+                fields.add((input, context) -> {
+                    int size = 1;
+                    while (input.readUnsignedByte() != 0) {
+                        size++;
+                    }
+                    return size;
+                });
+            } else if (Token.class.isAssignableFrom(type)) {
+                fields.add(TokenSerializerFactory::skipToken);
+            } else if (field.isAnnotationPresent(FunctionParams.class)) {
+                fields.add(TokenSerializerFactory::skipFunctionParams);
+            } else {
+                throw new IllegalStateException("Unsupported field type: " + type);
+            }
+        }
+
+        Skipper[] skippers = fields.toArray(new Skipper[0]);
+        return (input, context) -> {
+            int size = 1; //opcode
+            for (Skipper skipper : skippers) {
+                size += skipper.skip(input, context);
+            }
+            return size;
+        };
+    }
+
+    private interface Skipper {
+        int skip(DataInput input, BytecodeContext context) throws UncheckedIOException;
     }
 
     @Override
@@ -118,6 +270,14 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
         }
     }
 
+    @Override
+    protected boolean isCompilable(Field field) {
+        return super.isCompilable(field) &&
+                field.getType() != String.class &&
+                field.getType() != String[].class &&
+                !field.isAnnotationPresent(FunctionParams.class);
+    }
+
     private static String readString(DataInput input) throws UncheckedIOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         int b;
@@ -272,26 +432,60 @@ public class TokenSerializerFactory extends ReflectionSerializerFactory<Bytecode
         register(INT64ToString.class);     //63
     }
 
-    private static void register(Class<? extends Token> clazz, boolean conversion) {
-        Map<Integer, Class<? extends Token>> table;
+    private static synchronized void register(Class<? extends Token> clazz, boolean conversion) {
+        TokenTable current = tokenTable;
+        MethodHandle[] main = current.main;
+        MethodHandle[] conversionTable = current.conversion;
+        Class<? extends Token>[] mainClasses = current.mainClasses;
+        Class<? extends Token>[] conversionClasses = current.conversionClasses;
+        MethodHandle[] table;
+        Class<? extends Token>[] classes;
 
         if (conversion) {
-            table = conversionTokenTable;
+            table = conversionTable = conversionTable.clone();
+            classes = conversionClasses = conversionClasses.clone();
         } else {
-            table = mainTokenTable;
+            table = main = main.clone();
+            classes = mainClasses = mainClasses.clone();
         }
 
         try {
-            Class<? extends Token> old = table.put(clazz.getDeclaredField("OPCODE").getInt(null), clazz);
+            int opcode = clazz.getDeclaredField("OPCODE").getInt(null);
+            Class<? extends Token> old = classes[opcode];
+            table[opcode] = MethodHandles.publicLookup()
+                    .unreflectConstructor(clazz.getConstructor())
+                    .asType(CONSTRUCTOR_TYPE);
+            classes[opcode] = clazz;
             if (old != null) {
                 log.info(old + " replaced with " + clazz);
             }
         } catch (ReflectiveOperationException e) {
             throw new RuntimeException(String.format("Couldn't register %s opcode", clazz), e);
         }
+
+        tokenTable = new TokenTable(main, conversionTable, mainClasses, conversionClasses);
     }
 
     public static void register(@NonNull Class<? extends Token> clazz) {
         register(clazz, clazz.isAnnotationPresent(ConversionToken.class));
     }
+
+    private static final class TokenTable {
+        final MethodHandle[] main;
+        final MethodHandle[] conversion;
+        final Class<? extends Token>[] mainClasses;
+        final Class<? extends Token>[] conversionClasses;
+
+        TokenTable(MethodHandle[] main, MethodHandle[] conversion, Class<? extends Token>[] mainClasses, Class<? extends Token>[] conversionClasses) {
+            this.main = main;
+            this.conversion = conversion;
+            this.mainClasses = mainClasses;
+            this.conversionClasses = conversionClasses;
+        }
+
+        @SuppressWarnings("unchecked")
+        static TokenTable empty() {
+            return new TokenTable(new MethodHandle[0x100], new MethodHandle[0x100], new Class[0x100], new Class[0x100]);
+        }
+    }
 }
@@ -89,8 +89,7 @@ public class LabelTable extends Token {
 
     private static final Sizer<LabelTable> sizer =
             (token, context) -> 1 +
-                    Arrays.stream(token.labels)
-                            .mapToInt(l -> 8).sum() +
+                    token.labels.length * 8 +
                     8;
 
     @Override
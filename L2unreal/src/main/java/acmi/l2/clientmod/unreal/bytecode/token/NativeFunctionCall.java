@@ -37,7 +37,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = false)
@@ -68,11 +67,12 @@ public class NativeFunctionCall extends Token {
         }
     }
 
+    private static final Sizer<NativeFunctionCall> sizer =
+            (token, context) -> (token.nativeIndex > 0xff ? 2 : 1) + getSize(token.params, context);
+
     @Override
     protected Sizer<NativeFunctionCall> getSizer() {
-        return (token, context) -> (token.nativeIndex > 0xff ? 2 : 1) +
-                Stream.concat(Arrays.stream(token.params), Stream.of(new EndFunctionParams()))
-                        .mapToInt(t -> t.getSize(context)).sum();
+        return sizer;
     }
 
     @Override
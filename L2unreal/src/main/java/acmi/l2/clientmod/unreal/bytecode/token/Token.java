@@ -22,6 +22,7 @@
 package acmi.l2.clientmod.unreal.bytecode.token;
 
 import acmi.l2.clientmod.io.DataOutput;
+import acmi.l2.clientmod.io.FieldAccessor;
 import acmi.l2.clientmod.io.ObjectOutput;
 import acmi.l2.clientmod.io.annotation.UByte;
 import acmi.l2.clientmod.io.annotation.UShort;
@@ -33,16 +34,19 @@ import acmi.l2.clientmod.unreal.bytecode.token.annotation.FunctionParams;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiFunction;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.List;
 
-import static acmi.l2.clientmod.io.ReflectionUtil.fieldGet;
+import static acmi.l2.clientmod.io.ReflectionUtil.fieldAccessor;
 
 public abstract class Token {
-    private static final Map<Class<? extends Token>, Sizer> SIZERS = new HashMap<>();
+    private static final ClassValue<Sizer> SIZERS = new ClassValue<Sizer>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Sizer computeValue(Class<?> type) {
+            return createSizer((Class<? extends Token>) type);
+        }
+    };
 
     protected abstract int getOpcode();
 
@@ -58,42 +62,78 @@ public abstract class Token {
     public abstract String toString(UnrealRuntimeContext context);
 
     protected Sizer getSizer() {
-        return SIZERS.computeIfAbsent(getClass(), k -> createSizer(getClass()));
+        return SIZERS.get(getClass());
     }
 
+    /**
+     * Splits the serialized layout of a token class into a constant part (opcode and primitive fields)
+     * and the fields whose size depends on the instance, so that sizing never touches reflection metadata.
+     */
     private static Sizer createSizer(Class<? extends Token> clazz) {
-        return (token, context) -> 1 + //opcode
-                Arrays.stream(clazz.getDeclaredFields())
-                        .filter(f -> !Modifier.isStatic(f.getModifiers()))
-                        .filter(f -> !Modifier.isTransient(f.getModifiers()))
-                        .map(Token::fieldSizer)
-                        .mapToInt(f -> f.apply(token, context))
-                        .sum();
+        int fixed = 1; //opcode
+        List<FieldAccessor> strings = new ArrayList<>();
+        List<FieldAccessor> tokens = new ArrayList<>();
+        List<FieldAccessor> params = new ArrayList<>();
+        for (Field f : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers())) {
+                continue;
+            }
+
+            Class type = f.getType();
+            if (type == Byte.TYPE || f.isAnnotationPresent(UByte.class)) {
+                fixed += 1;
+            } else if (type == Short.TYPE || f.isAnnotationPresent(UShort.class)) {
+                fixed += 2;
+            } else if (type == Integer.TYPE) {
+                fixed += 4;
+            } else if (type == Float.TYPE) {
+                fixed += 4;
+            } else if (type == String.class) {
+                strings.add(fieldAccessor(f));
+            } else if (Token.class.isAssignableFrom(type)) {
+                tokens.add(fieldAccessor(f));
+            } else if (f.isAnnotationPresent(FunctionParams.class)) {
+                params.add(fieldAccessor(f));
+            } else {
+                throw new IllegalStateException("Unsupported field type: " + type);
+            }
+        }
+
+        int fixedSize = fixed;
+        FieldAccessor[] stringFields = strings.toArray(new FieldAccessor[0]);
+        FieldAccessor[] tokenFields = tokens.toArray(new FieldAccessor[0]);
+        FieldAccessor[] paramsFields = params.toArray(new FieldAccessor[0]);
+        if (stringFields.length == 0 && tokenFields.length == 0 && paramsFields.length == 0) {
+            return (token, context) -> fixedSize;
+        }
+        return (token, context) -> {
+            int size = fixedSize;
+            for (FieldAccessor f : stringFields) {
+                size += getSize((String) f.get(token), context);
+            }
+            for (FieldAccessor f : tokenFields) {
+                size += ((Token) f.get(token)).getSize(context);
+            }
+            for (FieldAccessor f : paramsFields) {
+                size += getSize((Token[]) f.get(token), context);
+            }
+            return size;
+        };
+    }
+
+    static int getSize(String s, BytecodeContext context) {
+        return s.getBytes(context.getUnrealPackage().getFile().getCharset()).length + 1;
     }
 
-    private static BiFunction<Token, BytecodeContext, Integer> fieldSizer(Field f) {
-        Class type = f.getType();
-        if (type == Byte.TYPE || f.isAnnotationPresent(UByte.class)) {
-            return (token, context) -> 1;
-        } else if (type == Short.TYPE || f.isAnnotationPresent(UShort.class)) {
-            return (token, context) -> 2;
-        } else if (type == Integer.TYPE) {
-            return (token, context) -> 4;
-        } else if (type == Float.TYPE) {
-            return (token, context) -> 4;
-        } else if (type == String.class) {
-            return (token, context) -> {
-                String s = (String) fieldGet(f, token);
-                return s.getBytes(context.getUnrealPackage().getFile().getCharset()).length + 1;
-            };
-        } else if (Token.class.isAssignableFrom(type)) {
-            return (token, context) -> ((Token) fieldGet(f, token)).getSize(context);
-        } else if (f.isAnnotationPresent(FunctionParams.class)) {
-            return (token, context) -> Stream.concat(Arrays.stream(((Token[]) fieldGet(f, token))), Stream.of(new EndFunctionParams()))
-                    .mapToInt(t -> t.getSize(context)).sum();
-        } else {
-            throw new IllegalStateException("Unsupported field type: " + type);
+    /**
+     * Size of a {@link FunctionParams} list including its terminating {@link EndFunctionParams}.
+     */
+    static int getSize(Token[] params, BytecodeContext context) {
+        int size = 1;
+        for (Token param : params) {
+            size += param.getSize(context);
         }
+        return size;
     }
 
     @SuppressWarnings("unchecked")
@@ -24,6 +24,7 @@ package acmi.l2.clientmod.unreal.core;
 import acmi.l2.clientmod.unreal.annotation.Bytecode;
 import acmi.l2.clientmod.unreal.annotation.NameRef;
 import acmi.l2.clientmod.unreal.annotation.ObjectRef;
+import acmi.l2.clientmod.unreal.bytecode.RawBytecode;
 import acmi.l2.clientmod.unreal.bytecode.token.Token;
 
 import java.util.Iterator;
@@ -44,6 +45,20 @@ public class Struct extends Field implements Iterable<Field> {
     public int textPos;
     @Bytecode
     public Token[] bytecode;
+    /**
+     * Undecoded script captured by lazy loads, see {@link #getBytecode()}.
+     */
+    public transient RawBytecode rawBytecode;
+
+    /**
+     * Returns {@link #bytecode}, decoding it from {@link #rawBytecode} on first access.
+     */
+    public synchronized Token[] getBytecode() {
+        if (bytecode == null && rawBytecode != null) {
+            bytecode = rawBytecode.decode();
+        }
+        return bytecode;
+    }
 
     @Override
     public Iterator<Field> iterator() {
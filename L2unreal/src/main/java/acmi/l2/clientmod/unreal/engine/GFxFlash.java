@@ -21,11 +21,14 @@
  */
 package acmi.l2.clientmod.unreal.engine;
 
+import acmi.l2.clientmod.io.LazyValue;
+import acmi.l2.clientmod.io.annotation.Lazy;
 import acmi.l2.clientmod.unreal.annotation.NameRef;
 import acmi.l2.clientmod.unreal.core.Object;
 
 public class GFxFlash extends Object {
     @NameRef
     public String type;
-    public byte[] data;
+    @Lazy
+    public LazyValue<byte[]> data;
 }
@@ -22,13 +22,20 @@
 package acmi.l2.clientmod.unreal.engine;
 
 import acmi.l2.clientmod.io.ByteUtil;
+import acmi.l2.clientmod.io.LazyValue;
 import acmi.l2.clientmod.io.ObjectInput;
 import acmi.l2.clientmod.io.ObjectOutput;
 import acmi.l2.clientmod.io.annotation.*;
 import acmi.l2.clientmod.unreal.UnrealPackageContext;
 
-import java.util.Arrays;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class StaticMesh extends Primitive {
@@ -223,6 +230,81 @@ public class StaticMesh extends Primitive {
         }
     }
 
+    private static <T> int count(LazyValue<T> value, ToIntFunction<T> length) {
+        if (value == null) {
+            return 0;
+        }
+        ByteBuffer encoded = value.getEncoded();
+        if (encoded != null) {
+            return readCount(encoded);
+        }
+        T array = value.get();
+        return array == null ? 0 : length.applyAsInt(array);
+    }
+
+    /**
+     * Reads the length prefix of an encoded stream, leaving the buffer at the first element.
+     */
+    private static int readCount(ByteBuffer encoded) {
+        return ByteUtil.compactIntFromBytes(() -> encoded.get() & 0xff);
+    }
+
+    /**
+     * Elements of an encoded stream positioned after its length prefix.
+     */
+    private static ByteBuffer elements(ByteBuffer buffer) {
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Buffer for {@code count} elements with the length prefix written, positioned at the first element.
+     */
+    private static ByteBuffer allocate(int count, int elementSize) {
+        byte[] prefix = ByteUtil.compactIntToByteArray(count);
+        ByteBuffer buffer = ByteBuffer.allocate(prefix.length + Math.multiplyExact(count, elementSize));
+        buffer.put(prefix);
+        return buffer;
+    }
+
+    private static final class ElementList<E> extends AbstractList<E> implements RandomAccess {
+        private final int size;
+        private final IntFunction<E> element;
+
+        ElementList(int size, IntFunction<E> element) {
+            this.size = size;
+            this.element = element;
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return element.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Flat arrays read in bulk from an encoded stream. Decoded objects can be changed in place, so the arrays only
+     * hold while the stream field refers to the same value and it is still not decoded.
+     */
+    private static final class FlatCache<A> {
+        private final LazyValue<?> source;
+        private final A data;
+
+        FlatCache(LazyValue<?> source, A data) {
+            this.source = source;
+            this.data = data;
+        }
+
+        A get(LazyValue<?> value) {
+            return value == source && !value.isDecoded() ? data : null;
+        }
+    }
+
     public static class StaticMeshSection {
         public int f4;
         @UShort
@@ -243,12 +325,136 @@ public class StaticMesh extends Primitive {
     }
 
     public static class StaticMeshVertexStream {
-        public StaticMeshVertex[] vert;
+        private static final int VERTEX_SIZE = 6 * 4;
+
+        @Lazy
+        public LazyValue<StaticMeshVertex[]> vert;
         public int revision;
+        private transient FlatCache<float[][]> flat;
+
+        public int getVertexCount() {
+            return count(vert, v -> v.length);
+        }
+
+        /**
+         * Vertex positions, x, y, z per vertex. Read in bulk while {@link #vert} is not decoded.
+         */
+        public float[] getPositions() {
+            return flat()[0].clone();
+        }
+
+        public FloatBuffer getPositions(FloatBuffer dst) {
+            return dst.put(flat()[0]);
+        }
+
+        /**
+         * Vertex normals, x, y, z per vertex. Read in bulk while {@link #vert} is not decoded.
+         */
+        public float[] getNormals() {
+            return flat()[1].clone();
+        }
+
+        public FloatBuffer getNormals(FloatBuffer dst) {
+            return dst.put(flat()[1]);
+        }
+
+        /**
+         * Positions and normals read in one pass, kept until {@link #vert} is replaced or decoded.
+         */
+        private float[][] flat() {
+            LazyValue<StaticMeshVertex[]> value = vert;
+            FlatCache<float[][]> cache = flat;
+            float[][] res = cache == null ? null : cache.get(value);
+            if (res != null) {
+                return res;
+            }
+
+            ByteBuffer encoded = value == null ? null : value.getEncoded();
+            if (encoded != null) {
+                int count = readCount(encoded);
+                float[] positions = new float[count * 3];
+                float[] normals = new float[count * 3];
+                FloatBuffer floats = elements(encoded).asFloatBuffer();
+                for (int i = 0; i < positions.length; i += 3) {
+                    floats.get(positions, i, 3).get(normals, i, 3);
+                }
+                res = new float[][]{positions, normals};
+                flat = new FlatCache<>(value, res);
+                return res;
+            }
+
+            StaticMeshVertex[] vertices = value == null ? null : value.get();
+            int count = vertices == null ? 0 : vertices.length;
+            float[] positions = new float[count * 3];
+            float[] normals = new float[count * 3];
+            for (int i = 0; i < count; i++) {
+                put(positions, i * 3, vertices[i].pos);
+                put(normals, i * 3, vertices[i].normal);
+            }
+            return new float[][]{positions, normals};
+        }
+
+        private static void put(float[] dst, int offset, Vector v) {
+            dst[offset] = v.x;
+            dst[offset + 1] = v.y;
+            dst[offset + 2] = v.z;
+        }
+
+        /**
+         * Replaces {@link #vert} with vertices encoded in bulk, they are decoded to objects on first {@code vert.get()}.
+         */
+        public void setVertices(float[] positions, float[] normals) {
+            if (positions.length != normals.length || positions.length % 3 != 0) {
+                throw new IllegalArgumentException("positions and normals must have 3 components per vertex");
+            }
+            int count = positions.length / 3;
+            ByteBuffer buffer = allocate(count, VERTEX_SIZE);
+            FloatBuffer floats = elements(buffer).asFloatBuffer();
+            for (int i = 0; i < positions.length; i += 3) {
+                floats.put(positions, i, 3).put(normals, i, 3);
+            }
+            vert = LazyValue.encoded(buffer.rewind(), count, StaticMeshVertexStream::decode);
+            flat = null;
+        }
+
+        private static StaticMeshVertex[] decode(ByteBuffer encoded) {
+            StaticMeshVertex[] vertices = new StaticMeshVertex[readCount(encoded)];
+            float[] data = new float[vertices.length * 6];
+            elements(encoded).asFloatBuffer().get(data);
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = vertex(data, i * 3, data, i * 3);
+            }
+            return vertices;
+        }
+
+        /**
+         * Per-vertex copies of the current positions and normals, created on access.
+         */
+        public List<StaticMeshVertex> getVertices() {
+            float[][] flat = flat();
+            float[] positions = flat[0];
+            float[] normals = flat[1];
+            return new ElementList<>(positions.length / 3, i -> vertex(positions, i * 3, normals, i * 3));
+        }
+
+        private static StaticMeshVertex vertex(float[] positions, int p, float[] normals, int n) {
+            StaticMeshVertex vertex = new StaticMeshVertex();
+            vertex.pos = vector(positions[p], positions[p + 1], positions[p + 2]);
+            vertex.normal = vector(normals[n], normals[n + 1], normals[n + 2]);
+            return vertex;
+        }
+
+        private static Vector vector(float x, float y, float z) {
+            Vector vector = new Vector();
+            vector.x = x;
+            vector.y = y;
+            vector.z = z;
+            return vector;
+        }
 
         @Override
         public String toString() {
-            return String.format(Locale.ROOT, "[%d,%s]", revision, Arrays.toString(vert));
+            return String.format(Locale.ROOT, "[%d,%s]", revision, vert);
         }
     }
 
@@ -263,23 +469,193 @@ public class StaticMesh extends Primitive {
     }
 
     public static class RawColorStream {
-        public Color[] color;
+        private static final int COLOR_SIZE = 4;
+
+        @Lazy
+        public LazyValue<Color[]> color;
         public int revision;
+        private transient FlatCache<byte[]> flat;
+
+        public int getColorCount() {
+            return count(color, c -> c.length);
+        }
+
+        /**
+         * Colors, r, g, b, a per vertex. Read in bulk while {@link #color} is not decoded.
+         */
+        public byte[] getColorData() {
+            return flat().clone();
+        }
+
+        public ByteBuffer getColorData(ByteBuffer dst) {
+            return dst.put(flat());
+        }
+
+        private byte[] flat() {
+            LazyValue<Color[]> value = color;
+            FlatCache<byte[]> cache = flat;
+            byte[] res = cache == null ? null : cache.get(value);
+            if (res != null) {
+                return res;
+            }
+
+            ByteBuffer encoded = value == null ? null : value.getEncoded();
+            if (encoded != null) {
+                res = new byte[readCount(encoded) * COLOR_SIZE];
+                elements(encoded).get(res);
+                flat = new FlatCache<>(value, res);
+                return res;
+            }
+
+            Color[] colors = value == null ? null : value.get();
+            if (colors == null) {
+                return new byte[0];
+            }
+            res = new byte[colors.length * COLOR_SIZE];
+            for (int i = 0; i < colors.length; i++) {
+                res[i * 4] = colors[i].r;
+                res[i * 4 + 1] = colors[i].g;
+                res[i * 4 + 2] = colors[i].b;
+                res[i * 4 + 3] = colors[i].a;
+            }
+            return res;
+        }
+
+        /**
+         * Replaces {@link #color} with colors encoded in bulk, they are decoded to objects on first {@code color.get()}.
+         */
+        public void setColorData(byte[] data) {
+            if (data.length % COLOR_SIZE != 0) {
+                throw new IllegalArgumentException("data must have 4 components per color");
+            }
+            ByteBuffer buffer = allocate(data.length / COLOR_SIZE, COLOR_SIZE);
+            elements(buffer).put(data);
+            color = LazyValue.encoded(buffer.rewind(), data.length / COLOR_SIZE, encoded -> {
+                Color[] colors = new Color[readCount(encoded)];
+                byte[] bytes = new byte[colors.length * COLOR_SIZE];
+                elements(encoded).get(bytes);
+                for (int i = 0; i < colors.length; i++) {
+                    colors[i] = color(bytes, i * COLOR_SIZE);
+                }
+                return colors;
+            });
+            flat = null;
+        }
+
+        /**
+         * Per-vertex copies of the current colors, created on access.
+         */
+        public List<Color> getColors() {
+            byte[] data = flat();
+            return new ElementList<>(data.length / COLOR_SIZE, i -> color(data, i * COLOR_SIZE));
+        }
+
+        private static Color color(byte[] data, int offset) {
+            Color color = new Color();
+            color.r = data[offset];
+            color.g = data[offset + 1];
+            color.b = data[offset + 2];
+            color.a = data[offset + 3];
+            return color;
+        }
 
         @Override
         public String toString() {
-            return String.format(Locale.ROOT, "[%d,%s]", revision, Arrays.toString(color));
+            return String.format(Locale.ROOT, "[%d,%s]", revision, color);
         }
     }
 
     public static class StaticMeshUVStream {
-        public MeshUVFloat[] data;
+        private static final int UV_SIZE = 2 * 4;
+
+        @Lazy
+        public LazyValue<MeshUVFloat[]> data;
         public int f10;
         public int f1C;
+        private transient FlatCache<float[]> flat;
+
+        public int getUVCount() {
+            return count(data, d -> d.length);
+        }
+
+        /**
+         * Texture coordinates, u, v per vertex. Read in bulk while {@link #data} is not decoded.
+         */
+        public float[] getUVData() {
+            return flat().clone();
+        }
+
+        public FloatBuffer getUVData(FloatBuffer dst) {
+            return dst.put(flat());
+        }
+
+        private float[] flat() {
+            LazyValue<MeshUVFloat[]> value = data;
+            FlatCache<float[]> cache = flat;
+            float[] res = cache == null ? null : cache.get(value);
+            if (res != null) {
+                return res;
+            }
+
+            ByteBuffer encoded = value == null ? null : value.getEncoded();
+            if (encoded != null) {
+                res = new float[readCount(encoded) * 2];
+                elements(encoded).asFloatBuffer().get(res);
+                flat = new FlatCache<>(value, res);
+                return res;
+            }
+
+            MeshUVFloat[] uvs = value == null ? null : value.get();
+            if (uvs == null) {
+                return new float[0];
+            }
+            res = new float[uvs.length * 2];
+            for (int i = 0; i < uvs.length; i++) {
+                res[i * 2] = uvs[i].u;
+                res[i * 2 + 1] = uvs[i].v;
+            }
+            return res;
+        }
+
+        /**
+         * Replaces {@link #data} with coordinates encoded in bulk, they are decoded to objects on first {@code data.get()}.
+         */
+        public void setUVData(float[] uv) {
+            if (uv.length % 2 != 0) {
+                throw new IllegalArgumentException("uv must have 2 components per vertex");
+            }
+            ByteBuffer buffer = allocate(uv.length / 2, UV_SIZE);
+            elements(buffer).asFloatBuffer().put(uv);
+            data = LazyValue.encoded(buffer.rewind(), uv.length / 2, encoded -> {
+                MeshUVFloat[] uvs = new MeshUVFloat[readCount(encoded)];
+                float[] floats = new float[uvs.length * 2];
+                elements(encoded).asFloatBuffer().get(floats);
+                for (int i = 0; i < uvs.length; i++) {
+                    uvs[i] = uv(floats, i * 2);
+                }
+                return uvs;
+            });
+            flat = null;
+        }
+
+        /**
+         * Per-vertex copies of the current coordinates, created on access.
+         */
+        public List<MeshUVFloat> getUVs() {
+            float[] uv = flat();
+            return new ElementList<>(uv.length / 2, i -> uv(uv, i * 2));
+        }
+
+        private static MeshUVFloat uv(float[] data, int offset) {
+            MeshUVFloat uv = new MeshUVFloat();
+            uv.u = data[offset];
+            uv.v = data[offset + 1];
+            return uv;
+        }
 
         @Override
         public String toString() {
-            return String.format(Locale.ROOT, "[%d,%d,%s]", f10, f1C, Arrays.toString(data));
+            return String.format(Locale.ROOT, "[%d,%d,%s]", f10, f1C, data);
         }
     }
 
@@ -294,13 +670,77 @@ public class StaticMesh extends Primitive {
     }
 
     public static class RawIndexBuffer {
+        private static final int INDEX_SIZE = 2;
+
+        @Lazy
         @UShort
-        public int[] indices;
+        public LazyValue<int[]> indices;
         public int revision;
+        private transient FlatCache<int[]> flat;
+
+        public int getIndexCount() {
+            return count(indices, i -> i.length);
+        }
+
+        /**
+         * Read in bulk while {@link #indices} is not decoded.
+         */
+        public int[] getIndexData() {
+            return flat().clone();
+        }
+
+        public IntBuffer getIndexData(IntBuffer dst) {
+            return dst.put(flat());
+        }
+
+        private int[] flat() {
+            LazyValue<int[]> value = indices;
+            FlatCache<int[]> cache = flat;
+            int[] res = cache == null ? null : cache.get(value);
+            if (res != null) {
+                return res;
+            }
+
+            ByteBuffer encoded = value == null ? null : value.getEncoded();
+            if (encoded != null) {
+                res = decode(encoded);
+                flat = new FlatCache<>(value, res);
+                return res;
+            }
+
+            res = value == null ? null : value.get();
+            return res == null ? new int[0] : res;
+        }
+
+        /**
+         * Replaces {@link #indices} with indices encoded in bulk, decoded on first {@code indices.get()}.
+         */
+        public void setIndexData(int[] data) {
+            ByteBuffer buffer = allocate(data.length, INDEX_SIZE);
+            ShortBuffer shorts = elements(buffer).asShortBuffer();
+            for (int index : data) {
+                if (index < 0 || index > 0xffff) {
+                    throw new IllegalArgumentException("index out of unsigned short range: " + index);
+                }
+                shorts.put((short) index);
+            }
+            indices = LazyValue.encoded(buffer.rewind(), data.length, RawIndexBuffer::decode);
+            flat = null;
+        }
+
+        private static int[] decode(ByteBuffer encoded) {
+            short[] shorts = new short[readCount(encoded)];
+            elements(encoded).asShortBuffer().get(shorts);
+            int[] res = new int[shorts.length];
+            for (int i = 0; i < shorts.length; i++) {
+                res[i] = shorts[i] & 0xffff;
+            }
+            return res;
+        }
 
         @Override
         public String toString() {
-            return String.format(Locale.ROOT, "[%d,%s]", revision, Arrays.toString(indices));
+            return String.format(Locale.ROOT, "[%d,%s]", revision, indices);
         }
     }
 
@@ -28,7 +28,6 @@ import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
 import acmi.l2.clientmod.unreal.core.*;
 import lombok.RequiredArgsConstructor;
 
-import java.io.ByteArrayOutputStream;
 import java.io.UncheckedIOException;
 import java.lang.Class;
 import java.lang.Object;
@@ -44,8 +43,9 @@ public class PropertiesUtil {
 
     public static List<L2Property> readProperties(ObjectInput<UnrealRuntimeContext> objectInput, String objClass) throws UnrealException {
         List<L2Property> properties = new ArrayList<>();
+        Map<Property, L2Property> byTemplate = new IdentityHashMap<>();
 
-        List<Property> classTemplate = null;
+        PropertyTemplates classTemplate = null;
 
         UnrealPackage up = objectInput.getContext().getUnrealPackage();
 
@@ -53,7 +53,7 @@ public class PropertiesUtil {
             String name;
             while (!(name = objectInput.getContext().getUnrealPackage().getNameTable().get(objectInput.readCompactInt()).getName()).equals("None")) {
                 if (classTemplate == null) {
-                    classTemplate = getPropertyFields(objectInput.getContext().getSerializer(), objClass).collect(Collectors.toList());
+                    classTemplate = objectInput.getContext().getSerializer().getPropertyTemplates(objClass);
                 }
 
                 int info = objectInput.readUnsignedByte();
@@ -66,17 +66,15 @@ public class PropertiesUtil {
                 int arrayIndex = array && propertyType != Type.BOOL ? objectInput.readCompactInt() : 0;
 
                 final String n = name;
-                L2Property property = PropertiesUtil.getAt(properties, n);
-                if (property == null) {
-                    Property template = classTemplate.parallelStream()
-                            .filter(pt -> pt.entry.getObjectName().getName().equalsIgnoreCase((n)))
-                            .filter(pt -> match(pt.getClass(), propertyType))
-                            .findAny()
-                            .orElse(null);
-                    if (template == null) {
-                        log.warning(() -> objClass + ": Property template not found: " + n);
-                    } else {
+                L2Property property = null;
+                Property template = classTemplate.get(n, propertyType);
+                if (template == null) {
+                    log.warning(() -> objClass + ": Property template not found: " + n);
+                } else {
+                    property = byTemplate.get(template);
+                    if (property == null) {
                         property = new L2Property(template);
+                        byTemplate.put(template, property);
                         properties.add(property);
                     }
                 }
@@ -169,7 +167,7 @@ public class PropertiesUtil {
     }
 
     public static List<L2Property> readStructBin(ObjectInput<UnrealRuntimeContext> objBuffer, String structName) throws UnrealException, UncheckedIOException {
-        List<Property> properties = getPropertyFields(objBuffer.getContext().getSerializer(), structName).collect(Collectors.toList());
+        List<Property> properties = objBuffer.getContext().getSerializer().getPropertyTemplates(structName).getProperties();
 
         return properties.stream()
                 .map(L2Property::new)
@@ -178,95 +176,15 @@ public class PropertiesUtil {
     }
 
     public static void writeProperties(ObjectOutput<UnrealRuntimeContext> output, List<L2Property> properties) {
-        UnrealPackage up = output.getContext().getUnrealPackage();
-
-        for (L2Property property : properties) {
-            Property template = property.getTemplate();
-
-            for (int i = 0; i < property.getSize(); i++) {
-                Object obj = property.getAt(i);
-                if (obj == null) {
-                    continue;
-                }
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ObjectOutput<UnrealRuntimeContext> objBuffer = new ObjectOutputStream<>(baos, output.getCharset(), 0, output.getSerializerFactory(), output.getContext());
-                write(objBuffer, template, obj);
-                byte[] bytes = baos.toByteArray();
-
-                Type type = getType(template);
-                int size = getPropertySize(bytes.length);
-                boolean array = (i > 0) || (type == Type.BOOL && ((Boolean) obj));
-                int info = (array ? 1 << 7 : 0) | (size << 4) | type.ordinal();
-
-                output.writeCompactInt(nameReference(up, template.entry.getObjectName().getName()));
-                output.writeByte(info);
-                if (type == Type.STRUCT) {
-                    output.writeCompactInt(nameReference(up, ((StructProperty) template).struct.entry.getObjectName().getName()));
-                }
-                switch (size) {
-                    case 5:
-                        output.writeByte(bytes.length);
-                        break;
-                    case 6:
-                        output.writeShort(bytes.length);
-                        break;
-                    case 7:
-                        output.writeInt(bytes.length);
-                        break;
-                }
-                if (i > 0) {
-                    output.writeByte(i);
-                }
-                output.writeBytes(bytes);
-            }
-        }
-        output.writeCompactInt(up.nameReference("None"));
+        new PropertyWriter(output).writeProperties(properties);
     }
 
     public static void write(ObjectOutput<UnrealRuntimeContext> objBuffer, Property template, Object obj) throws UncheckedIOException {
-        if (template instanceof ByteProperty) {
-            objBuffer.writeByte((Integer) obj);
-        } else if (template instanceof IntProperty) {
-            objBuffer.writeInt((Integer) obj);
-        } else if (template instanceof BoolProperty) {
-            //nothing
-        } else if (template instanceof FloatProperty) {
-            objBuffer.writeFloat((Float) obj);
-        } else if (template instanceof ObjectProperty) {
-            objBuffer.writeCompactInt((Integer) obj);
-        } else if (template instanceof NameProperty) {
-            objBuffer.writeCompactInt((Integer) obj);
-        } else if (template instanceof ArrayProperty) {
-            ArrayProperty arrayProperty = (ArrayProperty) template;
-
-            List<Object> arrayList = (List<Object>) obj;
-            objBuffer.writeCompactInt(arrayList.size());
-
-            Property arrayInner = arrayProperty.inner;
-            for (Object arrayObj : arrayList) {
-                write(objBuffer, arrayInner, arrayObj);
-            }
-        } else if (template instanceof StructProperty) {
-            StructProperty structProperty = (StructProperty) template;
-            writeStruct(objBuffer, structProperty.struct.getFullName(), (List<L2Property>) obj);
-        } else if (template instanceof StrProperty) {
-            objBuffer.writeLine((String) obj);
-        } else {
-            throw new UnsupportedOperationException(template.getClass().getSimpleName() + " serialization not implemented");
-        }
+        new PropertyWriter(objBuffer).write(template, obj);
     }
 
     public static void writeStruct(ObjectOutput<UnrealRuntimeContext> objBuffer, String structName, List<L2Property> struct) throws UncheckedIOException {
-        switch (structName) {
-            case "Core.Object.Color":
-            case "Core.Object.Vector":
-            case "Core.Object.Rotator":
-                writeStructBin(objBuffer, struct, structName);
-                break;
-            default:
-                writeProperties(objBuffer, struct);
-        }
+        new PropertyWriter(objBuffer).writeStruct(structName, struct);
     }
 
     public static void writeStructBin(DataOutput objBuffer, List<L2Property> struct, String structName) throws UncheckedIOException {
@@ -304,6 +222,205 @@ public class PropertiesUtil {
         return up.nameReference(name);
     }
 
+    /**
+     * Writes tagged properties straight to the output. The size of every value is
+     * computed before the value is written, so no intermediate buffers are needed.
+     * Sizes of nested property values are kept from the enclosing value's sizing,
+     * so each value is sized once however deep it is.
+     */
+    private static final class PropertyWriter {
+        private final ObjectOutput<UnrealRuntimeContext> output;
+        private final UnrealPackage up;
+        private final ObjectSizeCounter<UnrealRuntimeContext> counter;
+        private final Map<String, Integer> names = new HashMap<>();
+        private final Map<Object, Size> sizes = new IdentityHashMap<>();
+
+        PropertyWriter(ObjectOutput<UnrealRuntimeContext> output) {
+            this.output = output;
+            this.up = output.getContext().getUnrealPackage();
+            this.counter = new ObjectSizeCounter<>(output.getCharset(), output.getSerializerFactory(), output.getContext());
+        }
+
+        private int name(String name) {
+            return names.computeIfAbsent(name, n -> nameReference(up, n));
+        }
+
+        private int structName(Property template) {
+            return name(((StructProperty) template).struct.entry.getObjectName().getName());
+        }
+
+        void writeProperties(List<L2Property> properties) {
+            for (L2Property property : properties) {
+                Property template = property.getTemplate();
+                Type type = getType(template);
+                int name = name(template.entry.getObjectName().getName());
+
+                for (int i = 0; i < property.getSize(); i++) {
+                    Object obj = property.getAt(i);
+                    if (obj == null) {
+                        continue;
+                    }
+
+                    Size known = sizes.remove(obj);
+                    int length = known != null && known.template == template ? known.length : sizeOf(template, obj);
+                    int size = getPropertySize(length);
+                    boolean array = (i > 0) || (type == Type.BOOL && ((Boolean) obj));
+                    int info = (array ? 1 << 7 : 0) | (size << 4) | type.ordinal();
+
+                    output.writeCompactInt(name);
+                    output.writeByte(info);
+                    if (type == Type.STRUCT) {
+                        output.writeCompactInt(structName(template));
+                    }
+                    switch (size) {
+                        case 5:
+                            output.writeByte(length);
+                            break;
+                        case 6:
+                            output.writeShort(length);
+                            break;
+                        case 7:
+                            output.writeInt(length);
+                            break;
+                    }
+                    if (i > 0) {
+                        output.writeByte(i);
+                    }
+                    write(template, obj);
+                }
+            }
+            output.writeCompactInt(name("None"));
+        }
+
+        void write(Property template, Object obj) {
+            if (template instanceof ByteProperty) {
+                output.writeByte((Integer) obj);
+            } else if (template instanceof IntProperty) {
+                output.writeInt((Integer) obj);
+            } else if (template instanceof BoolProperty) {
+                //nothing
+            } else if (template instanceof FloatProperty) {
+                output.writeFloat((Float) obj);
+            } else if (template instanceof ObjectProperty) {
+                output.writeCompactInt((Integer) obj);
+            } else if (template instanceof NameProperty) {
+                output.writeCompactInt((Integer) obj);
+            } else if (template instanceof ArrayProperty) {
+                ArrayProperty arrayProperty = (ArrayProperty) template;
+
+                List<Object> arrayList = (List<Object>) obj;
+                output.writeCompactInt(arrayList.size());
+
+                Property arrayInner = arrayProperty.inner;
+                for (Object arrayObj : arrayList) {
+                    write(arrayInner, arrayObj);
+                }
+            } else if (template instanceof StructProperty) {
+                StructProperty structProperty = (StructProperty) template;
+                writeStruct(structProperty.struct.getFullName(), (List<L2Property>) obj);
+            } else if (template instanceof StrProperty) {
+                output.writeLine((String) obj);
+            } else {
+                throw new UnsupportedOperationException(template.getClass().getSimpleName() + " serialization not implemented");
+            }
+        }
+
+        void writeStruct(String structName, List<L2Property> struct) {
+            switch (structName) {
+                case "Core.Object.Color":
+                case "Core.Object.Vector":
+                case "Core.Object.Rotator":
+                    writeStructBin(output, struct, structName);
+                    break;
+                default:
+                    writeProperties(struct);
+            }
+        }
+
+        private int sizeOfProperties(List<L2Property> properties) {
+            int size = 0;
+            for (L2Property property : properties) {
+                Property template = property.getTemplate();
+                int tag = ByteUtil.sizeOfCompactInt(name(template.entry.getObjectName().getName())) + 1;
+                if (getType(template) == Type.STRUCT) {
+                    tag += ByteUtil.sizeOfCompactInt(structName(template));
+                }
+
+                for (int i = 0; i < property.getSize(); i++) {
+                    Object obj = property.getAt(i);
+                    if (obj == null) {
+                        continue;
+                    }
+
+                    int length = sizeOf(template, obj);
+                    if (obj instanceof List || obj instanceof String) {
+                        sizes.put(obj, new Size(template, length));
+                    }
+                    size += tag + sizeOfPropertySize(getPropertySize(length)) + (i > 0 ? 1 : 0) + length;
+                }
+            }
+            return size + ByteUtil.sizeOfCompactInt(name("None"));
+        }
+
+        private int sizeOf(Property template, Object obj) {
+            if (template instanceof ByteProperty) {
+                return 1;
+            } else if (template instanceof IntProperty || template instanceof FloatProperty) {
+                return 4;
+            } else if (template instanceof BoolProperty) {
+                return 0;
+            } else if (template instanceof ObjectProperty || template instanceof NameProperty) {
+                return ByteUtil.sizeOfCompactInt((Integer) obj);
+            } else if (template instanceof ArrayProperty) {
+                Property arrayInner = ((ArrayProperty) template).inner;
+                List<Object> arrayList = (List<Object>) obj;
+                int size = ByteUtil.sizeOfCompactInt(arrayList.size());
+                for (Object arrayObj : arrayList) {
+                    size += sizeOf(arrayInner, arrayObj);
+                }
+                return size;
+            } else if (template instanceof StructProperty) {
+                switch (((StructProperty) template).struct.getFullName()) {
+                    case "Core.Object.Color":
+                        return 4;
+                    case "Core.Object.Vector":
+                    case "Core.Object.Rotator":
+                        return 12;
+                    default:
+                        return sizeOfProperties((List<L2Property>) obj);
+                }
+            } else if (template instanceof StrProperty) {
+                int start = counter.getSize();
+                counter.writeLine((String) obj);
+                return counter.getSize() - start;
+            }
+            throw new UnsupportedOperationException(template.getClass().getSimpleName() + " serialization not implemented");
+        }
+
+        private static final class Size {
+            final Property template;
+            final int length;
+
+            Size(Property template, int length) {
+                this.template = template;
+                this.length = length;
+            }
+        }
+
+        private static int sizeOfPropertySize(int sizeType) {
+            switch (sizeType) {
+                case 5:
+                    return 1;
+                case 6:
+                    return 2;
+                case 7:
+                    return 4;
+                default:
+                    return 0;
+            }
+        }
+    }
+
     @RequiredArgsConstructor
     public enum Type {
         NONE(null),
@@ -405,7 +522,7 @@ public class PropertiesUtil {
         return props;
     }
 
-    private static boolean match(Class<? extends Property> clazz, Type type) {
+    static boolean match(Class<? extends Property> clazz, Type type) {
         return type.clazz != null && type.clazz.isAssignableFrom(clazz);
     }
 
@@ -441,23 +558,12 @@ public class PropertiesUtil {
     }
 
     public static Object defaultValue(Property property, String structName, UnrealSerializerFactory serializer, UnrealPackage unrealPackage) {
-        Optional<acmi.l2.clientmod.unreal.core.Class> classOpt = serializer.getStruct(structName)
-                .filter(struct -> struct instanceof acmi.l2.clientmod.unreal.core.Class)
-                .map(struct -> (acmi.l2.clientmod.unreal.core.Class) struct);
-
-        if (classOpt.isPresent()) {
-            Object[] defaultValue = new Object[1];
-            serializer.getStructTree(classOpt.get()).forEach(superClass -> superClass.properties
-                    .parallelStream()
-                    .filter(l2Property -> l2Property.getTemplate().equals(property))
-                    .findAny()
-                    .ifPresent(l2Property -> defaultValue[0] = l2Property.getAt(0)));
-            if (defaultValue[0] != null) {
-                if (PropertiesUtil.isPrimitive(property)) {
-                    return defaultValue[0];
-                } else if (property instanceof StructProperty) {
-                    return PropertiesUtil.cloneStruct((List<L2Property>) defaultValue[0]);
-                }
+        Object defaultValue = serializer.getDefaultValues(structName).get(property);
+        if (defaultValue != null) {
+            if (PropertiesUtil.isPrimitive(property)) {
+                return defaultValue;
+            } else if (property instanceof StructProperty) {
+                return PropertiesUtil.cloneStruct((List<L2Property>) defaultValue);
             }
         }
 
@@ -506,7 +612,8 @@ public class PropertiesUtil {
         for (Iterator<L2Property> it = properties.iterator(); it.hasNext(); ) {
             L2Property property = it.next();
 
-            java.lang.Object def = defaultValue(property.getTemplate(), structName, serializer, unrealPackage);
+            java.lang.Object def = property.getTemplate() instanceof StructProperty ? null :
+                    defaultValue(property.getTemplate(), structName, serializer, unrealPackage);
 
             boolean del = true;
             for (int i = 0; i < property.getSize(); i++) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.properties;
+
+import acmi.l2.clientmod.unreal.core.Property;
+
+import java.util.*;
+
+/**
+ * Immutable property table of a struct and its super structs, shared by all objects of that struct.
+ */
+public final class PropertyTemplates {
+    private static final Property[] EMPTY = new Property[0];
+
+    private final List<Property> properties;
+    private final Map<String, Property[]> byName = new HashMap<>();
+
+    public PropertyTemplates(List<Property> properties) {
+        this.properties = Collections.unmodifiableList(new ArrayList<>(properties));
+
+        for (Property property : this.properties) {
+            String name = property.entry.getObjectName().getName().toLowerCase();
+            Property[] same = byName.getOrDefault(name, EMPTY);
+            Property[] added = Arrays.copyOf(same, same.length + 1);
+            added[same.length] = property;
+            byName.put(name, added);
+        }
+    }
+
+    /**
+     * @return properties in the same order as {@link PropertiesUtil#getPropertyFields}
+     */
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return first property of the struct tree named {@code name} (case insensitive) that can hold {@code type}, or null
+     */
+    public Property get(String name, PropertiesUtil.Type type) {
+        for (Property property : byName.getOrDefault(name.toLowerCase(), EMPTY)) {
+            if (PropertiesUtil.match(property.getClass(), type)) {
+                return property;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal;
+
+import acmi.l2.clientmod.io.RandomAccess;
+import acmi.l2.clientmod.io.UnrealPackage;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class EnvironmentTest {
+    @Test
+    public void getPackageTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+
+        assertEquals(Collections.singletonList("Core.u"), environment.getPackage("core")
+                .map(File::getName)
+                .collect(Collectors.toList()));
+        assertEquals(0L, environment.getPackage("NoSuchPackage").count());
+    }
+
+    @Test
+    public void packageCacheTest() throws Exception {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        environment.setPackageBudget(1);
+        File core = environment.getPackage("Core").findAny().orElseThrow(IllegalStateException::new);
+        File engine = environment.getPackage("Engine").findAny().orElseThrow(IllegalStateException::new);
+
+        List<Callable<UnrealPackage>> tasks = Collections.nCopies(4, () -> environment.getPackage(core).orElse(null));
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            UnrealPackage up = environment.getPackage(core).orElseThrow(IllegalStateException::new);
+            for (Future<UnrealPackage> future : executor.invokeAll(tasks)) {
+                assertSame(up, future.get());
+            }
+
+            assertTrue(environment.getPackage(engine).isPresent());
+            assertSame(up, environment.getPackage(core).orElse(null));
+            assertTrue(environment.getExportEntry("Core.Object", c -> c.equalsIgnoreCase("Core.Class")).isPresent());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void exportIndexTest() throws Exception {
+        Path dir = Files.createTempDirectory("l2unreal");
+        try {
+            for (String name : Arrays.asList("Core.u", "Engine.u")) {
+                Files.copy(new File("src/test/resources/system", name).toPath(), dir.resolve(name));
+            }
+            File indexFile = dir.resolve("exports.idx").toFile();
+            AtomicInteger opened = new AtomicInteger();
+            Supplier<Environment> environment = () -> new Environment(dir.toFile(), Collections.singletonList("*.u")) {
+                @Override
+                protected RandomAccess createRandomAccess(File f) {
+                    opened.incrementAndGet();
+                    return super.createRandomAccess(f);
+                }
+            };
+
+            environment.get().setExportIndex(indexFile);
+            assertEquals(2, opened.getAndSet(0));
+
+            Environment indexed = environment.get();
+            indexed.setExportIndex(indexFile);
+            ExportSymbol actor = indexed.findExport("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class"))
+                    .orElseThrow(IllegalStateException::new);
+            assertEquals("Engine.u", actor.getFile().getName());
+            assertTrue(indexed.findExport("Engine.Touch", c -> c.equalsIgnoreCase("Core.Function")).isPresent());
+            assertFalse(indexed.findExport("Engine.NoSuchObject", c -> true).isPresent());
+            assertEquals(0, opened.get());
+
+            UnrealPackage.ExportEntry entry = indexed.getExportEntry("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class"))
+                    .orElseThrow(IllegalStateException::new);
+            assertEquals(actor.getExportIndex(), entry.getIndex());
+            assertEquals(1, opened.getAndSet(0));
+
+            assertTrue(dir.resolve("Core.u").toFile().setLastModified(System.currentTimeMillis() - 60_000));
+            environment.get().setExportIndex(indexFile);
+            assertEquals(1, opened.getAndSet(0));
+
+            // Engine.u is copied to the rewritten index undecoded and found at its new offset
+            Files.copy(new File("src/test/resources/system", "Editor.u").toPath(), dir.resolve("Editor.u"));
+            Environment updated = environment.get();
+            updated.setExportIndex(indexFile);
+            assertEquals(1, opened.getAndSet(0));
+            assertTrue(updated.findExport("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class")).isPresent());
+            assertEquals(0, opened.get());
+        } finally {
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    @Test
+    public void reloadTest() throws Exception {
+        Path dir = Files.createTempDirectory("l2unreal");
+        try {
+            for (String name : Arrays.asList("Core.u", "Engine.u", "UWindow.u")) {
+                Files.copy(new File("src/test/resources/system", name).toPath(), dir.resolve(name));
+            }
+            File file = dir.resolve("UWindow.u").toFile();
+            Predicate<String> isTexture = c -> c.equalsIgnoreCase("Engine.Texture");
+
+            try (UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(new Environment(dir.toFile(), Collections.singletonList("*.u")))) {
+                Env environment = serializerFactory.getEnvironment();
+                UnrealPackage.ExportEntry white = environment.getExportEntry("UWindow.WhiteTexture", isTexture)
+                        .orElseThrow(IllegalStateException::new);
+                acmi.l2.clientmod.unreal.core.Object whiteTexture = serializerFactory.getOrCreateObject(white);
+
+                try (UnrealPackage up = new UnrealPackage(file, false)) {
+                    int black = up.exportReferenceByName("UWindow.BlackTexture", isTexture) - 1;
+                    up.updateExportTable(table -> Collections.swap(table, white.getIndex(), black));
+                }
+                environment.markInvalid("UWindow");
+
+                UnrealPackage.ExportEntry moved = environment.getPackage(file)
+                        .map(up -> up.getExportTable().get(white.getIndex()))
+                        .orElseThrow(IllegalStateException::new);
+                assertEquals("UWindow.BlackTexture", moved.getObjectFullName());
+                assertEquals("UWindow.BlackTexture", serializerFactory.getOrCreateObject(moved).getFullName());
+
+                acmi.l2.clientmod.unreal.core.Object reloaded = serializerFactory.getOrCreateObject("UWindow.WhiteTexture", isTexture);
+                assertEquals("UWindow.WhiteTexture", reloaded.getFullName());
+                assertNotSame(whiteTexture, reloaded);
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    @Test
+    public void watchTest() throws Exception {
+        Path dir = Files.createTempDirectory("l2unreal");
+        try {
+            Environment environment = new Environment(dir.toFile(), Arrays.asList("*.u", "*.utx"));
+            assertEquals(0L, environment.listFiles().count());
+
+            Path file = Files.createFile(dir.resolve("Test.u"));
+            Files.createFile(dir.resolve("Test.txt"));
+            assertTrue(await(() -> environment.getPackage("test").count() == 1));
+
+            Files.delete(file);
+            assertTrue(await(() -> environment.getPackage("TEST").count() == 0));
+        } finally {
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
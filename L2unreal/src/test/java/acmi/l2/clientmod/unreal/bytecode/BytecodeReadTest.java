@@ -25,17 +25,23 @@ import acmi.l2.clientmod.io.*;
 import acmi.l2.clientmod.unreal.Environment;
 import acmi.l2.clientmod.unreal.UnrealRuntimeContext;
 import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
+import acmi.l2.clientmod.unreal.bytecode.token.Case;
+import acmi.l2.clientmod.unreal.bytecode.token.LabelTable;
 import acmi.l2.clientmod.unreal.bytecode.token.Token;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class BytecodeReadTest {
     @Test
@@ -65,18 +71,7 @@ public class BytecodeReadTest {
                                     tokenSerializerFactory,
                                     context
                             );
-                            if (!entry.getFullClassName().equalsIgnoreCase("Core.Class")) {
-                                input.readCompactInt();
-                            }
-                            input.readCompactInt();
-                            input.readCompactInt();
-                            input.readCompactInt();
-                            input.readCompactInt();
-                            input.readCompactInt();
-                            input.readCompactInt();
-                            input.readInt();
-                            input.readInt();
-                            int size = input.readInt();
+                            int size = readBytecodeSize(input, entry);
                             int pos = input.getPosition();
                             int readSize = 0;
                             List<Token> tokens = new ArrayList<>();
@@ -108,4 +103,62 @@ public class BytecodeReadTest {
             }
         }
     }
+
+    @Test
+    public void skipTest() {
+        Set<Class<?>> skipped = new HashSet<>();
+        File[] files = new File("src/test/resources/system")
+                .listFiles((dir, name) -> name.endsWith(".u"));
+        for (File file : files) {
+            try (UnrealPackage up = new UnrealPackage(file, true)) {
+                up.getExportTable().stream()
+                        .filter(exportEntry -> exportEntry.getFullClassName().equalsIgnoreCase("Core.Struct") ||
+                                exportEntry.getFullClassName().equalsIgnoreCase("Core.State") ||
+                                exportEntry.getFullClassName().equalsIgnoreCase("Core.Class") ||
+                                exportEntry.getFullClassName().equalsIgnoreCase("Core.Function"))
+                        .forEach(entry -> {
+                            byte[] entryBytes = entry.getObjectRawData();
+                            TokenSerializerFactory tokenSerializerFactory = new TokenSerializerFactory();
+                            BytecodeContext readContext = new BytecodeContext(up);
+                            BytecodeContext skipContext = new BytecodeContext(up);
+                            ObjectInputBuffer<BytecodeContext> read = new ObjectInputBuffer<>(ByteBuffer.wrap(entryBytes),
+                                    up.getFile().getCharset(), entry.getOffset(), tokenSerializerFactory, readContext);
+                            ObjectInputBuffer<BytecodeContext> skip = new ObjectInputBuffer<>(ByteBuffer.wrap(entryBytes),
+                                    up.getFile().getCharset(), entry.getOffset(), tokenSerializerFactory, skipContext);
+                            int size = readBytecodeSize(read, entry);
+                            assertEquals(size, readBytecodeSize(skip, entry));
+
+                            int readSize = 0;
+                            while (readSize < size) {
+                                int position = read.getPosition();
+                                Token token = read.readObject(Token.class);
+                                int skipSize = TokenSerializerFactory.skipToken(skip, skipContext);
+                                String message = String.format("%s 0x%04x %s", entry, position, token);
+                                assertEquals(message, read.getPosition(), skip.getPosition());
+                                assertEquals(message, token.getSize(readContext), skipSize);
+                                skipped.add(token.getClass());
+                                readSize += skipSize;
+                            }
+                            assertEquals(entry.toString(), size, readSize);
+                        });
+            }
+        }
+        assertTrue(skipped.contains(Case.class));
+        assertTrue(skipped.contains(LabelTable.class));
+    }
+
+    private static int readBytecodeSize(ObjectInput<BytecodeContext> input, UnrealPackage.ExportEntry entry) {
+        if (!entry.getFullClassName().equalsIgnoreCase("Core.Class")) {
+            input.readCompactInt();
+        }
+        input.readCompactInt();
+        input.readCompactInt();
+        input.readCompactInt();
+        input.readCompactInt();
+        input.readCompactInt();
+        input.readCompactInt();
+        input.readInt();
+        input.readInt();
+        return input.readInt();
+    }
 }
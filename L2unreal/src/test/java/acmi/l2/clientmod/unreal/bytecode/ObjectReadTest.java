@@ -21,18 +21,30 @@
  */
 package acmi.l2.clientmod.unreal.bytecode;
 
+import acmi.l2.clientmod.io.ObjectOutputStream;
 import acmi.l2.clientmod.io.UnrealPackage;
 import acmi.l2.clientmod.unreal.Environment;
 import acmi.l2.clientmod.unreal.UnrealRuntimeContext;
 import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
 import acmi.l2.clientmod.unreal.core.Class;
+import acmi.l2.clientmod.unreal.core.Function;
 import acmi.l2.clientmod.unreal.core.Struct;
+import acmi.l2.clientmod.unreal.core.Property;
+import acmi.l2.clientmod.unreal.core.StructProperty;
+import acmi.l2.clientmod.unreal.properties.L2Property;
+import acmi.l2.clientmod.unreal.properties.PropertiesUtil;
+import acmi.l2.clientmod.unreal.properties.PropertyTemplates;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.Arrays;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import static org.junit.Assert.*;
+
 public class ObjectReadTest {
     @Test
     public void test() {
@@ -51,6 +63,253 @@ public class ObjectReadTest {
         }
     }
 
+    @Test
+    public void parallelLoadTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory sequential = new UnrealSerializerFactory(environment);
+        UnrealSerializerFactory parallel = new UnrealSerializerFactory(environment);
+
+        File[] files = new File("src/test/resources/system")
+                .listFiles((dir, name) -> name.endsWith(".u"));
+        List<UnrealPackage> packages = new ArrayList<>();
+        try {
+            List<UnrealPackage.ExportEntry> classes = new ArrayList<>();
+            for (File file : files) {
+                UnrealPackage up = new UnrealPackage(file, true);
+                packages.add(up);
+                up.getExportTable()
+                        .stream()
+                        .filter(e -> e.getFullClassName().equalsIgnoreCase("Core.Class"))
+                        .forEach(classes::add);
+            }
+
+            parallel.loadAsync(classes).join();
+
+            for (UnrealPackage.ExportEntry entry : classes) {
+                Class expected = (Class) sequential.getOrCreateObject(entry);
+                Class actual = (Class) parallel.getOrCreateObject(entry);
+                assertEquals(entry.toString(), names(expected), names(actual));
+                assertEquals(entry.toString(), expected.properties.size(), actual.properties.size());
+            }
+        } finally {
+            packages.forEach(UnrealPackage::close);
+        }
+    }
+
+    @Test
+    public void propertyTemplatesTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+
+        serializerFactory.getOrCreateObject("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class"));
+        PropertyTemplates templates = serializerFactory.getPropertyTemplates("Engine.Actor");
+        assertSame(templates, serializerFactory.getPropertyTemplates("engine.actor"));
+        assertEquals(PropertiesUtil.getPropertyFields(serializerFactory, "Engine.Actor").count(), templates.getProperties().size());
+        assertNotNull(templates.get("LOCATION", PropertiesUtil.Type.STRUCT));
+        assertNull(templates.get("Location", PropertiesUtil.Type.INT));
+
+        serializerFactory.getEnvironment().markInvalid("Engine");
+        Class actor = (Class) serializerFactory.getOrCreateObject("Engine.Actor", c -> c.equalsIgnoreCase("Core.Class"));
+        PropertyTemplates reloaded = serializerFactory.getPropertyTemplates("Engine.Actor");
+        assertNotSame(templates, reloaded);
+        Set<Property> fields = propertyFields(serializerFactory, "Engine.Actor");
+        assertTrue(fields.containsAll(reloaded.getProperties()));
+        for (L2Property property : actor.properties) {
+            assertTrue(property.getName(), fields.contains(property.getTemplate()));
+        }
+    }
+
+    private static Set<Property> propertyFields(UnrealSerializerFactory serializerFactory, String structName) {
+        Set<Property> fields = Collections.newSetFromMap(new IdentityHashMap<>());
+        PropertiesUtil.getPropertyFields(serializerFactory, structName).forEach(fields::add);
+        return fields;
+    }
+
+    @Test
+    public void writePropertiesTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+
+        for (String file : new String[]{"Interface.u", "Engine.u"}) {
+            try (UnrealPackage up = new UnrealPackage(new File("src/test/resources/system/" + file), true)) {
+                up.getExportTable()
+                        .stream()
+                        .filter(e -> e.getFullClassName().equalsIgnoreCase("Core.Class"))
+                        .forEach(entry -> {
+                            Class clazz = (Class) serializerFactory.getOrCreateObject(entry);
+                            //Color defaults are not written back as stored
+                            if (clazz.properties.stream().anyMatch(ObjectReadTest::isColor)) {
+                                return;
+                            }
+                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                            PropertiesUtil.writeProperties(new ObjectOutputStream<>(baos, up.getFile().getCharset(), 0, serializerFactory, new UnrealRuntimeContext(entry, serializerFactory)), clazz.properties);
+                            byte[] written = baos.toByteArray();
+                            byte[] raw = entry.getObjectRawDataExternally();
+                            assertArrayEquals(entry.toString(), Arrays.copyOfRange(raw, raw.length - written.length, raw.length), written);
+                        });
+            }
+        }
+    }
+
+    private static boolean isColor(L2Property property) {
+        return property.getTemplate() instanceof StructProperty &&
+                ((StructProperty) property.getTemplate()).struct.getFullName().equals("Core.Object.Color");
+    }
+
+    @Test
+    public void defaultValuesTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+
+        Class hud = (Class) serializerFactory.getOrCreateObject("Engine.HUD", c -> c.equalsIgnoreCase("Core.Class"));
+        Map<Property, Object> defaults = serializerFactory.getDefaultValues("Engine.HUD");
+        assertSame(defaults, serializerFactory.getDefaultValues("engine.hud"));
+        for (L2Property property : hud.properties) {
+            assertSame(property.getAt(0), defaults.get(property.getTemplate()));
+        }
+        assertTrue(serializerFactory.getDefaultValues("Core.Object.Vector").isEmpty());
+
+        serializerFactory.getOrCreateObject("Fire.FireTexture", c -> c.equalsIgnoreCase("Core.Class"));
+        assertSame(defaults, serializerFactory.getDefaultValues("Engine.HUD"));
+
+        serializerFactory.getPropertyTemplates("Engine.HUD");
+        serializerFactory.getEnvironment().markInvalid("Engine");
+        Class reloaded = (Class) serializerFactory.getOrCreateObject("Engine.HUD", c -> c.equalsIgnoreCase("Core.Class"));
+        Map<Property, Object> reloadedDefaults = serializerFactory.getDefaultValues("Engine.HUD");
+        assertNotSame(defaults, reloadedDefaults);
+        assertEquals(defaults.size(), reloadedDefaults.size());
+        assertTrue(propertyFields(serializerFactory, "Engine.HUD").containsAll(reloadedDefaults.keySet()));
+        for (L2Property property : reloaded.properties) {
+            assertSame(property.getAt(0), reloadedDefaults.get(property.getTemplate()));
+        }
+    }
+
+    @Test
+    public void isSubclassTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+
+        assertTrue(serializerFactory.isSubclass("Engine.Actor", "Engine.HUD"));
+        assertTrue(serializerFactory.isSubclass("core.object", "Engine.HUD"));
+        assertTrue(serializerFactory.isSubclass("Engine.HUD", "Engine.HUD"));
+        assertFalse(serializerFactory.isSubclass("Engine.HUD", "Engine.Actor"));
+        assertFalse(serializerFactory.isSubclass("Engine.Pawn", "Engine.HUD"));
+        assertFalse(serializerFactory.isSubclass("Engine.Actor", "Engine.NoSuchClass"));
+
+        serializerFactory.getEnvironment().markInvalid("Engine");
+        assertTrue(serializerFactory.isSubclass("ENGINE.ACTOR", "engine.hud"));
+        assertFalse(serializerFactory.isSubclass("Engine.HUD", "Engine.Actor"));
+    }
+
+    @Test
+    public void lazyBytecodeTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory eager = new UnrealSerializerFactory(environment);
+        UnrealSerializerFactory lazy = new UnrealSerializerFactory(environment);
+        lazy.setLazyBytecode(true);
+
+        try (UnrealPackage up = new UnrealPackage(new File("src/test/resources/system/Core.u"), true)) {
+            up.getExportTable()
+                    .stream()
+                    .filter(e -> e.getFullClassName().equalsIgnoreCase("Core.Function"))
+                    .forEach(entry -> {
+                        Function expected = (Function) eager.getOrCreateObject(entry);
+                        Function actual = (Function) lazy.getOrCreateObject(entry);
+                        assertNull(actual.bytecode);
+
+                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                        lazy.forClass(Function.class).writeObject(actual, new ObjectOutputStream<>(baos, up.getFile().getCharset(), entry.getOffset(), lazy, new UnrealRuntimeContext(entry, lazy)));
+                        assertArrayEquals(entry.toString(), entry.getObjectRawDataExternally(), baos.toByteArray());
+
+                        assertEquals(entry.toString(), Arrays.toString(expected.bytecode), Arrays.toString(actual.getBytecode()));
+                    });
+        }
+    }
+
+    @Test
+    public void objectBudgetTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+        serializerFactory.setObjectBudget(10);
+
+        try (UnrealPackage up = new UnrealPackage(new File("src/test/resources/system/Engine.u"), true)) {
+            List<UnrealPackage.ExportEntry> texts = up.getExportTable()
+                    .stream()
+                    .filter(e -> e.getFullClassName().equalsIgnoreCase("Core.TextBuffer"))
+                    .collect(Collectors.toList());
+            UnrealPackage.ExportEntry actor = up.getExportTable()
+                    .stream()
+                    .filter(e -> e.getObjectFullName().equalsIgnoreCase("Engine.Actor"))
+                    .findAny()
+                    .orElseThrow(IllegalStateException::new);
+            UnrealPackage.ExportEntry physics = up.getExportTable()
+                    .stream()
+                    .filter(e -> e.getObjectFullName().equalsIgnoreCase("Engine.Actor.Physics"))
+                    .findAny()
+                    .orElseThrow(IllegalStateException::new);
+
+            Struct clazz = (Struct) serializerFactory.getOrCreateObject(actor);
+            Property property = StreamSupport.stream(clazz.spliterator(), false)
+                    .filter(field -> field.getFullName().equalsIgnoreCase("Engine.Actor.Physics"))
+                    .map(Property.class::cast)
+                    .findAny()
+                    .orElseThrow(IllegalStateException::new);
+            Object text = serializerFactory.getOrCreateObject(texts.get(0));
+            assertSame(text, serializerFactory.getOrCreateObject(texts.get(0)));
+            texts.forEach(serializerFactory::getOrCreateObject);
+
+            assertNotSame(text, serializerFactory.getOrCreateObject(texts.get(0)));
+            assertSame(clazz, serializerFactory.getOrCreateObject(actor));
+            assertSame(property, serializerFactory.getOrCreateObject(physics));
+        }
+    }
+
+    @Test
+    public void disassembleTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serial = new UnrealSerializerFactory(environment);
+        UnrealSerializerFactory parallel = new UnrealSerializerFactory(environment);
+        parallel.setLazyBytecode(true);
+
+        try (UnrealPackage up = new UnrealPackage(new File("src/test/resources/system/Engine.u"), true)) {
+            Map<String, String> expected = new HashMap<>();
+            up.getExportTable()
+                    .stream()
+                    .filter(e -> UnrealSerializerFactory.IS_STRUCT.test(e.getFullClassName()))
+                    .forEach(entry -> {
+                        Struct struct = (Struct) serial.getOrCreateObject(entry);
+                        if (struct.bytecode.length > 0) {
+                            expected.put(entry.getObjectFullName(), Disassembler.toString(struct.bytecode, new UnrealRuntimeContext(entry, serial)));
+                        }
+                        if (struct.scriptText != null) {
+                            expected.put(entry.getObjectFullName() + ".uc", struct.scriptText.text);
+                        }
+                    });
+
+            Map<String, String> actual = new ConcurrentHashMap<>();
+            new Disassembler(parallel).disassemble(up, new Disassembler.Output() {
+                @Override
+                public void bytecode(UnrealPackage.ExportEntry entry, String text) {
+                    assertNull(actual.put(entry.getObjectFullName(), text));
+                }
+
+                @Override
+                public void scriptText(UnrealPackage.ExportEntry entry, String text) {
+                    assertNull(actual.put(entry.getObjectFullName() + ".uc", text));
+                }
+            }).join();
+
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static List<String> names(Struct struct) {
+        return StreamSupport.stream(struct.spliterator(), false)
+                .map(field -> field.entry.getObjectFullName())
+                .collect(Collectors.toList());
+    }
+
     @Test
     public void bytecodeTest() {
         Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.unreal.engine;
+
+import acmi.l2.clientmod.io.*;
+import acmi.l2.clientmod.unreal.Environment;
+import acmi.l2.clientmod.unreal.UnrealRuntimeContext;
+import acmi.l2.clientmod.unreal.UnrealSerializerFactory;
+import acmi.l2.clientmod.unreal.core.Object;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StaticMeshTest {
+    private static final int VERTICES = 1000;
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void flatStreamsTest() {
+        Environment environment = Environment.fromIni(new File(getClass().getResource("/system/L2.ini").getFile()));
+        UnrealSerializerFactory serializerFactory = new UnrealSerializerFactory(environment);
+
+        try (UnrealPackage up = new UnrealPackage(new File("src/test/resources/system/Engine.u"), true)) {
+            UnrealRuntimeContext context = new UnrealRuntimeContext(up.getExportTable().get(0), serializerFactory);
+
+            Random random = new Random(1);
+            float[] positions = floats(random, VERTICES * 3);
+            float[] normals = floats(random, VERTICES * 3);
+            float[] uv = floats(random, VERTICES * 2);
+            byte[] colors = new byte[VERTICES * 4];
+            random.nextBytes(colors);
+            int[] indices = random.ints(VERTICES * 3, 0, 0x10000).toArray();
+
+            StaticMesh flat = mesh();
+            flat.vertexStream.setVertices(positions, normals);
+            flat.colorStream1.setColorData(colors);
+            flat.colorStream2.setColorData(new byte[0]);
+            flat.UVStream[0].setUVData(uv);
+            flat.indexStream1.setIndexData(indices);
+            flat.indexStream2.setIndexData(new int[0]);
+
+            StaticMesh objects = mesh();
+            objects.vertexStream.vert = new LazyValue<>(flat.vertexStream.getVertices().toArray(new StaticMesh.StaticMeshVertex[0]));
+            objects.colorStream1.color = new LazyValue<>(flat.colorStream1.getColors().toArray(new Object.Color[0]));
+            objects.colorStream2.color = new LazyValue<>(new Object.Color[0]);
+            objects.UVStream[0].data = new LazyValue<>(flat.UVStream[0].getUVs().toArray(new StaticMesh.MeshUVFloat[0]));
+            objects.indexStream1.indices = new LazyValue<>(indices.clone());
+            objects.indexStream2.indices = new LazyValue<>(new int[0]);
+
+            byte[] expected = write(objects, serializerFactory, context);
+            assertArrayEquals("flat", expected, write(flat, serializerFactory, context));
+
+            StaticMesh read = new StaticMesh();
+            read.readStaticMesh((ObjectInput) new ObjectInputBuffer<>(ByteBuffer.wrap(expected), up.getFile().getCharset(), serializerFactory, context));
+            assertEquals(VERTICES, read.vertexStream.getVertexCount());
+            assertTrue(Arrays.equals(positions, read.vertexStream.getPositions()));
+            assertTrue(Arrays.equals(normals, read.vertexStream.getNormals()));
+            assertTrue(Arrays.equals(uv, read.UVStream[0].getUVData()));
+            assertArrayEquals("colors", colors, read.colorStream1.getColorData());
+            assertTrue(Arrays.equals(indices, read.indexStream1.getIndexData()));
+            StaticMesh.StaticMeshVertex last = read.vertexStream.getVertices().get(VERTICES - 1);
+            assertEquals(positions[VERTICES * 3 - 1], last.pos.z, 0f);
+            assertEquals(normals[VERTICES * 3 - 3], last.normal.x, 0f);
+            assertArrayEquals("round trip", expected, write(read, serializerFactory, context));
+
+            read.vertexStream.getPositions()[0] = Float.NaN;
+            assertTrue(Arrays.equals(positions, read.vertexStream.getPositions()));
+            FloatBuffer dst = FloatBuffer.allocate(VERTICES * 3);
+            read.vertexStream.getNormals(dst);
+            assertTrue(Arrays.equals(normals, dst.array()));
+
+            read.vertexStream.vert.get();
+            assertTrue(Arrays.equals(positions, read.vertexStream.getPositions()));
+            assertArrayEquals("decoded", expected, write(read, serializerFactory, context));
+            read.vertexStream.vert.get()[0].pos.x = 42;
+            assertEquals(42, read.vertexStream.getPositions()[0], 0f);
+            read.vertexStream.vert.set(new StaticMesh.StaticMeshVertex[0]);
+            assertEquals(0, read.vertexStream.getNormals().length);
+        }
+    }
+
+    private static StaticMesh mesh() {
+        StaticMesh mesh = new StaticMesh();
+        mesh.sections = new StaticMesh.StaticMeshSection[0];
+        mesh.boundingBox2 = new Object.Box();
+        mesh.boundingBox2.min = new Object.Vector();
+        mesh.boundingBox2.max = new Object.Vector();
+        mesh.vertexStream = new StaticMesh.StaticMeshVertexStream();
+        mesh.colorStream1 = new StaticMesh.RawColorStream();
+        mesh.colorStream2 = new StaticMesh.RawColorStream();
+        mesh.UVStream = new StaticMesh.StaticMeshUVStream[]{new StaticMesh.StaticMeshUVStream()};
+        mesh.indexStream1 = new StaticMesh.RawIndexBuffer();
+        mesh.indexStream2 = new StaticMesh.RawIndexBuffer();
+        mesh.u1 = new StaticMesh.U1[0];
+        mesh.u2 = new StaticMesh.U2[0];
+        mesh.zeros12 = new byte[12];
+        mesh.u3 = new StaticMesh.U3[0];
+        mesh.u4 = new StaticMesh.U4[0];
+        return mesh;
+    }
+
+    private static float[] floats(Random random, int count) {
+        float[] res = new float[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = random.nextFloat() * 2000 - 1000;
+        }
+        return res;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static byte[] write(StaticMesh mesh, UnrealSerializerFactory serializerFactory, UnrealRuntimeContext context) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        mesh.writeStaticMesh((ObjectOutput) ObjectOutput.objectOutput(DataOutput.dataOutput(baos, context.getUnrealPackage().getFile().getCharset()), serializerFactory, context));
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import acmi.l2.clientmod.io.annotation.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read and write throughput of representative object shapes.
+ * Run with {@code ant benchmark}; {@code -prof gc} reports bytes allocated per op as gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+    @Param({"flat", "compact", "strings", "arrays", "nested", "custom", "hook"})
+    public String shape;
+
+    @Param({"stream", "buffer"})
+    public String io;
+
+    @Param({"reflection", "bytecode"})
+    public String factory;
+
+    private static final Charset charset = UnrealPackage.getDefaultCharset();
+
+    private SerializerFactory<Context> serializerFactory;
+    private Class<?> clazz;
+    private Object object;
+    private byte[] data;
+    private ByteBuffer buffer;
+    private ByteArrayOutputStream baos;
+
+    @Setup
+    public void setup() {
+        serializerFactory = factory.equals("bytecode") ? new BytecodeSerializerFactory<>() : new ReflectionSerializerFactory<>();
+        Random random = new Random(0);
+        Supplier<?> supplier;
+        switch (shape) {
+            case "flat":
+                supplier = () -> Flat.random(random);
+                break;
+            case "compact":
+                supplier = () -> Compacts.random(random);
+                break;
+            case "strings":
+                supplier = () -> Strings.random(random);
+                break;
+            case "arrays":
+                supplier = () -> LargeArrays.random(random);
+                break;
+            case "nested":
+                supplier = () -> Nested.random(random);
+                break;
+            case "custom":
+                supplier = () -> CustomField.random(random);
+                break;
+            case "hook":
+                supplier = () -> Hook.random(random);
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+        object = supplier.get();
+        clazz = object.getClass();
+
+        baos = new ByteArrayOutputStream();
+        new ObjectOutputStream<>(baos, charset, serializerFactory, null).write(object);
+        data = baos.toByteArray();
+        buffer = ByteBuffer.allocate(data.length);
+    }
+
+    @Benchmark
+    public Object read() {
+        ObjectInput<Context> input = io.equals("buffer") ?
+                new ObjectInputBuffer<>(ByteBuffer.wrap(data), charset, serializerFactory, null) :
+                new ObjectInputStream<>(new ByteArrayInputStream(data), charset, serializerFactory, null);
+        return input.readObject(clazz);
+    }
+
+    @Benchmark
+    public int write() {
+        if (io.equals("buffer")) {
+            buffer.clear();
+            ObjectOutputBuffer<Context> output = new ObjectOutputBuffer<>(buffer, charset, serializerFactory, null);
+            output.write(object);
+            return output.getPosition();
+        }
+        baos.reset();
+        new ObjectOutputStream<>(baos, charset, serializerFactory, null).write(object);
+        return baos.size();
+    }
+
+    public static class Flat {
+        public byte b;
+        public short s;
+        public int i1, i2, i3, i4;
+        public long l;
+        public float f1, f2, f3;
+
+        static Flat random(Random random) {
+            Flat flat = new Flat();
+            flat.b = (byte) random.nextInt();
+            flat.s = (short) random.nextInt();
+            flat.i1 = random.nextInt();
+            flat.i2 = random.nextInt();
+            flat.i3 = random.nextInt();
+            flat.i4 = random.nextInt();
+            flat.l = random.nextLong();
+            flat.f1 = random.nextFloat();
+            flat.f2 = random.nextFloat();
+            flat.f3 = random.nextFloat();
+            return flat;
+        }
+    }
+
+    public static class Compacts {
+        @Compact
+        public int c1, c2, c3, c4, c5, c6, c7, c8;
+
+        static Compacts random(Random random) {
+            Compacts compacts = new Compacts();
+            compacts.c1 = random.nextInt(64);
+            compacts.c2 = random.nextInt(1 << 13);
+            compacts.c3 = random.nextInt(1 << 20);
+            compacts.c4 = random.nextInt();
+            compacts.c5 = -random.nextInt(64);
+            compacts.c6 = -random.nextInt(1 << 13);
+            compacts.c7 = -random.nextInt(1 << 20);
+            compacts.c8 = random.nextInt();
+            return compacts;
+        }
+    }
+
+    public static class Strings {
+        @UTF
+        public String utf;
+        public String line1;
+        public String line2;
+        public String line3;
+
+        static Strings random(Random random) {
+            Strings strings = new Strings();
+            strings.utf = "utf string " + random.nextInt();
+            strings.line1 = "Engine.Actor";
+            strings.line2 = "line string " + random.nextInt();
+            strings.line3 = "линия " + random.nextInt();
+            return strings;
+        }
+    }
+
+    public static class LargeArrays {
+        public byte[] bytes;
+        public short[] shorts;
+        public int[] ints;
+        public float[] floats;
+        @Compact
+        public int[] compacts;
+
+        static LargeArrays random(Random random) {
+            LargeArrays arrays = new LargeArrays();
+            arrays.bytes = new byte[0x10000];
+            random.nextBytes(arrays.bytes);
+            arrays.shorts = new short[0x4000];
+            arrays.ints = random.ints(0x4000).toArray();
+            arrays.floats = new float[0x4000];
+            for (int i = 0; i < arrays.floats.length; i++) {
+                arrays.shorts[i] = (short) random.nextInt();
+                arrays.floats[i] = random.nextFloat();
+            }
+            arrays.compacts = random.ints(0x1000, 0, 1 << 20).toArray();
+            return arrays;
+        }
+    }
+
+    public static class Nested {
+        public Vector origin;
+        public Vector[] vertices;
+        public int revision;
+
+        public static class Vector {
+            public float x, y, z;
+        }
+
+        static Nested random(Random random) {
+            Nested nested = new Nested();
+            nested.origin = vector(random);
+            nested.vertices = new Vector[256];
+            for (int i = 0; i < nested.vertices.length; i++) {
+                nested.vertices[i] = vector(random);
+            }
+            nested.revision = random.nextInt();
+            return nested;
+        }
+
+        private static Vector vector(Random random) {
+            Vector vector = new Vector();
+            vector.x = random.nextFloat();
+            vector.y = random.nextFloat();
+            vector.z = random.nextFloat();
+            return vector;
+        }
+    }
+
+    public static class CustomField {
+        @Custom(PointSerializer.class)
+        public Point point;
+        public int tail;
+
+        static CustomField random(Random random) {
+            CustomField custom = new CustomField();
+            custom.point = new Point(random.nextInt(), random.nextInt());
+            custom.tail = random.nextInt();
+            return custom;
+        }
+    }
+
+    public static class Point {
+        final int x, y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    public static class PointSerializer implements Serializer<Point, Context> {
+        @Override
+        public Point instantiate(ObjectInput<Context> input) {
+            return new Point(input.readInt(), input.readInt());
+        }
+
+        @Override
+        public <S extends Point> void readObject(S obj, ObjectInput<Context> input) {
+        }
+
+        @Override
+        public <S extends Point> void writeObject(S obj, ObjectOutput<Context> output) {
+            output.writeInt(obj.x);
+            output.writeInt(obj.y);
+        }
+    }
+
+    public static class Hook {
+        public int count;
+        public float[] values;
+
+        @ReadMethod
+        public void readHook(ObjectInput<Context> input) {
+            count = input.readCompactInt();
+            values = new float[count];
+            input.readFloats(values, 0, count);
+        }
+
+        @WriteMethod
+        public void writeHook(ObjectOutput<Context> output) {
+            output.writeCompactInt(count);
+            output.writeFloats(values, 0, count);
+        }
+
+        static Hook random(Random random) {
+            Hook hook = new Hook();
+            hook.count = 64;
+            hook.values = new float[hook.count];
+            for (int i = 0; i < hook.count; i++) {
+                hook.values[i] = random.nextFloat();
+            }
+            return hook;
+        }
+    }
+}
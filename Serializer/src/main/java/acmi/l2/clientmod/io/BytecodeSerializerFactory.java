@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import acmi.l2.clientmod.io.annotation.*;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * {@link ReflectionSerializerFactory} that compiles the fields of each class into a hidden class
+ * with straight-line read and write code.
+ * <p>
+ * Fields rejected by {@link #isCompilable(Field)} are still handled by {@link #handleField},
+ * so subclasses keep their {@code serializer} overrides for those fields.
+ */
+public class BytecodeSerializerFactory<C extends Context> extends ReflectionSerializerFactory<C> {
+    private static final Logger log = Logger.getLogger(BytecodeSerializerFactory.class.getName());
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("BytecodeSerializerFactory.enabled", "true"));
+
+    private static final ClassValue<Map<String, MethodHandle>> codecs = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public interface Codec {
+        void read(Object obj, ObjectInput<?> input);
+
+        void write(Object obj, ObjectOutput<?> output);
+    }
+
+    @Override
+    protected <T> void buildFields(Class<?> clazz, List<BiConsumer<T, ObjectInput<C>>> read, List<BiConsumer<T, ObjectOutput<C>>> write) {
+        if (!ENABLED || isFieldInstrumented() || clazz.isHidden() || clazz.isArray() || clazz.isPrimitive() || clazz.getClassLoader() == null) {
+            super.buildFields(clazz, read, write);
+            return;
+        }
+
+        List<Field> fields = new ArrayList<>();
+        StringBuilder layout = new StringBuilder();
+        List<BiConsumer<T, ObjectInput<C>>> fallbackRead = new ArrayList<>();
+        List<BiConsumer<T, ObjectOutput<C>>> fallbackWrite = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!validField(field)) {
+                continue;
+            }
+
+            fields.add(field);
+            if (isCompilable(field)) {
+                layout.append('+');
+            } else {
+                layout.append('-');
+
+                List<BiConsumer<T, ObjectInput<C>>> fieldRead = new ArrayList<>();
+                List<BiConsumer<T, ObjectOutput<C>>> fieldWrite = new ArrayList<>();
+                handleField(field, fieldRead, fieldWrite);
+                fallbackRead.add(chain(fieldRead));
+                fallbackWrite.add(chain(fieldWrite));
+            }
+        }
+
+        if (layout.indexOf("+") < 0) {
+            read.addAll(fallbackRead);
+            write.addAll(fallbackWrite);
+            return;
+        }
+
+        Codec codec;
+        try {
+            MethodHandle constructor = codecs.get(clazz).computeIfAbsent(layout.toString(), l -> Generator.define(clazz, fields, l));
+            codec = (Codec) constructor.invokeExact(fallbackRead.toArray(new BiConsumer<?, ?>[0]), fallbackWrite.toArray(new BiConsumer<?, ?>[0]));
+        } catch (SerializerException | LinkageError e) {
+            log.log(Level.FINE, e, () -> String.format("Couldn't compile %s, falling back to reflection", clazz));
+            super.buildFields(clazz, read, write);
+            return;
+        } catch (Throwable e) {
+            throw FieldAccessor.rethrow(e);
+        }
+
+        read.add(codec::read);
+        write.add(codec::write);
+    }
+
+    /**
+     * Whether the field is read and written by generated code instead of {@link #handleField}.
+     * Subclasses that give special meaning to some fields in {@code serializer} must exclude them here.
+     */
+    protected boolean isCompilable(Field field) {
+        if (Modifier.isFinal(field.getModifiers()) || field.isAnnotationPresent(Custom.class)) {
+            return false;
+        }
+        Class<?> type = field.getType();
+        return isCompilableType(type.isArray() ? type.getComponentType() : type);
+    }
+
+    private static boolean isCompilableType(Class<?> type) {
+        return type == Byte.TYPE ||
+                type == Short.TYPE ||
+                type == Integer.TYPE ||
+                type == Long.TYPE ||
+                type == Float.TYPE ||
+                type == String.class;
+    }
+
+    private static <T, A> BiConsumer<T, A> chain(List<BiConsumer<T, A>> actions) {
+        if (actions.size() == 1) {
+            return actions.get(0);
+        }
+        return (obj, io) -> actions.forEach(action -> action.accept(obj, io));
+    }
+
+    private static final class Generator {
+        private static final String CODEC = Type.getInternalName(Codec.class);
+        private static final String INPUT = Type.getInternalName(ObjectInput.class);
+        private static final String OUTPUT = Type.getInternalName(ObjectOutput.class);
+        private static final String ACTIONS = Type.getDescriptor(BiConsumer[].class);
+        private static final String BI_CONSUMER = Type.getInternalName(BiConsumer.class);
+
+        private static final int THIS = 0;
+        private static final int OBJ = 1;
+        private static final int IO = 2;
+        private static final int TARGET = 3;
+        private static final int ARRAY = 4;
+        private static final int INDEX = 5;
+
+        static MethodHandle define(Class<?> clazz, List<Field> fields, String layout) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+                MethodHandles.Lookup codec = lookup.defineHiddenClass(generate(clazz, fields, layout), true, MethodHandles.Lookup.ClassOption.NESTMATE);
+                return codec.findConstructor(codec.lookupClass(), MethodType.methodType(void.class, BiConsumer[].class, BiConsumer[].class))
+                        .asType(MethodType.methodType(Codec.class, BiConsumer[].class, BiConsumer[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new SerializerException(e);
+            }
+        }
+
+        private static byte[] generate(Class<?> clazz, List<Field> fields, String layout) {
+            String owner = Type.getInternalName(clazz);
+            String name = owner + "$$Codec";
+
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    return "java/lang/Object";
+                }
+            };
+            cw.visit(V17, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, "java/lang/Object", new String[]{CODEC});
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, "reads", ACTIONS, null, null).visitEnd();
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, "writes", ACTIONS, null, null).visitEnd();
+
+            MethodVisitor mv = cw.visitMethod(0, "<init>", "(" + ACTIONS + ACTIONS + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitFieldInsn(PUTFIELD, name, "reads", ACTIONS);
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitFieldInsn(PUTFIELD, name, "writes", ACTIONS);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            generateMethod(cw, name, owner, fields, layout, true);
+            generateMethod(cw, name, owner, fields, layout, false);
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private static void generateMethod(ClassWriter cw, String name, String owner, List<Field> fields, String layout, boolean read) {
+            String io = read ? INPUT : OUTPUT;
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, read ? "read" : "write", "(Ljava/lang/Object;L" + io + ";)V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, OBJ);
+            mv.visitTypeInsn(CHECKCAST, owner);
+            mv.visitVarInsn(ASTORE, TARGET);
+
+            int fallback = 0;
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                if (layout.charAt(i) == '+') {
+                    if (read) {
+                        readField(mv, owner, field);
+                    } else {
+                        writeField(mv, owner, field);
+                    }
+                } else {
+                    mv.visitVarInsn(ALOAD, THIS);
+                    mv.visitFieldInsn(GETFIELD, name, read ? "reads" : "writes", ACTIONS);
+                    pushInt(mv, fallback++);
+                    mv.visitInsn(AALOAD);
+                    mv.visitVarInsn(ALOAD, OBJ);
+                    mv.visitVarInsn(ALOAD, IO);
+                    mv.visitMethodInsn(INVOKEINTERFACE, BI_CONSUMER, "accept", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+                }
+            }
+
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private static void readField(MethodVisitor mv, String owner, Field field) {
+            Class<?> type = field.getType();
+            if (!type.isArray()) {
+                mv.visitVarInsn(ALOAD, TARGET);
+                readValue(mv, type, field);
+                mv.visitFieldInsn(PUTFIELD, owner, field.getName(), Type.getDescriptor(type));
+                return;
+            }
+
+            Class<?> componentType = type.getComponentType();
+            Length length = field.getAnnotation(Length.class);
+            if (length != null && length.value() == Length.Type.CONST) {
+                pushInt(mv, length.length());
+            } else {
+                mv.visitVarInsn(ALOAD, IO);
+                input(mv, length == null ? "readCompactInt" :
+                        length.value() == Length.Type.BYTE ? "readUnsignedByte" :
+                                length.value() == Length.Type.INT ? "readInt" : "readCompactInt", "()I");
+            }
+            if (componentType == String.class) {
+                mv.visitTypeInsn(ANEWARRAY, "java/lang/String");
+            } else {
+                mv.visitIntInsn(NEWARRAY, newArrayType(componentType));
+            }
+            mv.visitVarInsn(ASTORE, ARRAY);
+
+            String bulk = bulkMethod(componentType, field);
+            if (componentType == Byte.TYPE) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                input(mv, "readFully", "([B)V");
+            } else if (bulk != null) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ARRAYLENGTH);
+                input(mv, "read" + bulk, "(" + Type.getDescriptor(field.getType()) + "II)V");
+            } else {
+                Label head = new Label();
+                Label end = new Label();
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, INDEX);
+                mv.visitLabel(head);
+                mv.visitVarInsn(ILOAD, INDEX);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ARRAYLENGTH);
+                mv.visitJumpInsn(IF_ICMPGE, end);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitVarInsn(ILOAD, INDEX);
+                readValue(mv, componentType, field);
+                mv.visitInsn(Type.getType(componentType).getOpcode(IASTORE));
+                mv.visitIincInsn(INDEX, 1);
+                mv.visitJumpInsn(GOTO, head);
+                mv.visitLabel(end);
+            }
+
+            mv.visitVarInsn(ALOAD, TARGET);
+            mv.visitVarInsn(ALOAD, ARRAY);
+            mv.visitFieldInsn(PUTFIELD, owner, field.getName(), Type.getDescriptor(type));
+        }
+
+        private static void readValue(MethodVisitor mv, Class<?> type, Field field) {
+            mv.visitVarInsn(ALOAD, IO);
+            if (type == Byte.TYPE) {
+                input(mv, "readUnsignedByte", "()I");
+                mv.visitInsn(I2B);
+            } else if (type == Short.TYPE) {
+                input(mv, "readUnsignedShort", "()I");
+                mv.visitInsn(I2S);
+            } else if (type == Integer.TYPE) {
+                if (field.isAnnotationPresent(Compact.class)) {
+                    input(mv, "readCompactInt", "()I");
+                } else if (field.isAnnotationPresent(UShort.class)) {
+                    input(mv, "readUnsignedShort", "()I");
+                } else if (field.isAnnotationPresent(UByte.class)) {
+                    input(mv, "readUnsignedByte", "()I");
+                } else {
+                    input(mv, "readInt", "()I");
+                }
+            } else if (type == Long.TYPE) {
+                input(mv, "readLong", "()J");
+            } else if (type == Float.TYPE) {
+                input(mv, "readFloat", "()F");
+            } else {
+                input(mv, field.isAnnotationPresent(UTF.class) ? "readUTF" : "readLine", "()Ljava/lang/String;");
+            }
+        }
+
+        private static void writeField(MethodVisitor mv, String owner, Field field) {
+            Class<?> type = field.getType();
+            if (!type.isArray()) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, TARGET);
+                mv.visitFieldInsn(GETFIELD, owner, field.getName(), Type.getDescriptor(type));
+                writeValue(mv, type, field);
+                return;
+            }
+
+            Class<?> componentType = type.getComponentType();
+            mv.visitVarInsn(ALOAD, TARGET);
+            mv.visitFieldInsn(GETFIELD, owner, field.getName(), Type.getDescriptor(type));
+            mv.visitVarInsn(ASTORE, ARRAY);
+
+            Length length = field.getAnnotation(Length.class);
+            if (length == null || length.value() != Length.Type.CONST) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ARRAYLENGTH);
+                output(mv, length == null ? "writeCompactInt" :
+                        length.value() == Length.Type.BYTE ? "writeByte" :
+                                length.value() == Length.Type.INT ? "writeInt" : "writeCompactInt", "(I)V");
+            }
+
+            String bulk = bulkMethod(componentType, field);
+            if (componentType == Byte.TYPE) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                output(mv, "writeBytes", "([B)V");
+            } else if (bulk != null) {
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ARRAYLENGTH);
+                output(mv, "write" + bulk, "(" + Type.getDescriptor(field.getType()) + "II)V");
+            } else {
+                Label head = new Label();
+                Label end = new Label();
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, INDEX);
+                mv.visitLabel(head);
+                mv.visitVarInsn(ILOAD, INDEX);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitInsn(ARRAYLENGTH);
+                mv.visitJumpInsn(IF_ICMPGE, end);
+                mv.visitVarInsn(ALOAD, IO);
+                mv.visitVarInsn(ALOAD, ARRAY);
+                mv.visitVarInsn(ILOAD, INDEX);
+                mv.visitInsn(Type.getType(componentType).getOpcode(IALOAD));
+                writeValue(mv, componentType, field);
+                mv.visitIincInsn(INDEX, 1);
+                mv.visitJumpInsn(GOTO, head);
+                mv.visitLabel(end);
+            }
+        }
+
+        private static void writeValue(MethodVisitor mv, Class<?> type, Field field) {
+            if (type == Byte.TYPE) {
+                output(mv, "writeByte", "(I)V");
+            } else if (type == Short.TYPE) {
+                output(mv, "writeShort", "(I)V");
+            } else if (type == Integer.TYPE) {
+                if (field.isAnnotationPresent(Compact.class)) {
+                    output(mv, "writeCompactInt", "(I)V");
+                } else if (field.isAnnotationPresent(UShort.class)) {
+                    output(mv, "writeShort", "(I)V");
+                } else if (field.isAnnotationPresent(UByte.class)) {
+                    output(mv, "writeByte", "(I)V");
+                } else {
+                    output(mv, "writeInt", "(I)V");
+                }
+            } else if (type == Long.TYPE) {
+                output(mv, "writeLong", "(J)V");
+            } else if (type == Float.TYPE) {
+                output(mv, "writeFloat", "(F)V");
+            } else {
+                output(mv, field.isAnnotationPresent(UTF.class) ? "writeUTF" : "writeLine", "(Ljava/lang/String;)V");
+            }
+        }
+
+        private static String bulkMethod(Class<?> type, Field field) {
+            if (type == Short.TYPE) {
+                return "Shorts";
+            } else if (type == Integer.TYPE) {
+                return field.isAnnotationPresent(Compact.class) ||
+                        field.isAnnotationPresent(UShort.class) ||
+                        field.isAnnotationPresent(UByte.class) ? null : "Ints";
+            } else if (type == Long.TYPE) {
+                return "Longs";
+            } else if (type == Float.TYPE) {
+                return "Floats";
+            }
+            return null;
+        }
+
+        private static int newArrayType(Class<?> type) {
+            if (type == Byte.TYPE) {
+                return T_BYTE;
+            } else if (type == Short.TYPE) {
+                return T_SHORT;
+            } else if (type == Integer.TYPE) {
+                return T_INT;
+            } else if (type == Long.TYPE) {
+                return T_LONG;
+            } else {
+                return T_FLOAT;
+            }
+        }
+
+        private static void input(MethodVisitor mv, String method, String descriptor) {
+            mv.visitMethodInsn(INVOKEINTERFACE, INPUT, method, descriptor, true);
+        }
+
+        private static void output(MethodVisitor mv, String method, String descriptor) {
+            mv.visitMethodInsn(INVOKEINTERFACE, OUTPUT, method, descriptor, true);
+        }
+
+        private static void pushInt(MethodVisitor mv, int value) {
+            if (value >= -1 && value <= 5) {
+                mv.visitInsn(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, value);
+            } else {
+                mv.visitLdcInsn(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field and method accessors of a class, resolved lazily and cached per class.
+ * Only the members declared by the class itself are covered, superclasses have their own instance.
+ */
+public final class ClassAccessor {
+    private static final ClassValue<ClassAccessor> accessors = new ClassValue<ClassAccessor>() {
+        @Override
+        protected ClassAccessor computeValue(Class<?> type) {
+            return new ClassAccessor(type);
+        }
+    };
+
+    private final Class<?> clazz;
+    private final Map<String, FieldAccessor> fieldsByName = new ConcurrentHashMap<>();
+    private final Map<Method, MethodAccessor> methods = new ConcurrentHashMap<>();
+    private volatile List<FieldAccessor> fields;
+
+    private ClassAccessor(Class<?> clazz) {
+        this.clazz = clazz;
+    }
+
+    public static ClassAccessor of(Class<?> clazz) {
+        return accessors.get(clazz);
+    }
+
+    public Class<?> getType() {
+        return clazz;
+    }
+
+    /**
+     * Accessors of the non-static, non-synthetic fields declared by the class, in declaration order.
+     */
+    public List<FieldAccessor> getFields() {
+        List<FieldAccessor> list = fields;
+        if (list == null) {
+            list = new ArrayList<>();
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                    list.add(getField(field));
+                }
+            }
+            fields = list = Collections.unmodifiableList(list);
+        }
+        return list;
+    }
+
+    public FieldAccessor getField(Field field) {
+        if (field.getDeclaringClass() != clazz) {
+            throw new IllegalArgumentException(String.format("%s is not declared by %s", field, clazz));
+        }
+        return fieldsByName.computeIfAbsent(field.getName(), name -> new FieldAccessor(field));
+    }
+
+    public MethodAccessor getMethod(Method method) {
+        if (method.getDeclaringClass() != clazz) {
+            throw new IllegalArgumentException(String.format("%s is not declared by %s", method, clazz));
+        }
+        return methods.computeIfAbsent(method, MethodAccessor::new);
+    }
+
+    /**
+     * Accessors of the methods declared by the class that carry the annotation, e.g. {@code @ReadMethod}.
+     */
+    public List<MethodAccessor> getMethods(Class<? extends Annotation> annotation) {
+        List<MethodAccessor> list = new ArrayList<>();
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(annotation)) {
+                list.add(getMethod(method));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassAccessor[" + clazz + "]";
+    }
+}
@@ -21,5 +21,13 @@
  */
 package acmi.l2.clientmod.io;
 
+import java.nio.charset.Charset;
+
 public interface Context {
+    /**
+     * Charset strings are encoded with, null if unknown.
+     */
+    default Charset getCharset() {
+        return null;
+    }
 }
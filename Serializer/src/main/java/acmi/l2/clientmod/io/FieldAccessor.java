@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Field access through method handles resolved once per field.
+ * <p>
+ * The typed accessors ({@link #getInt}, {@link #setInt}, ...) require the field type to match exactly
+ * and never box.
+ */
+public final class FieldAccessor {
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle typedGetter;
+    private final MethodHandle typedSetter;
+    private final MethodHandle copier;
+
+    FieldAccessor(Field field) {
+        this.field = field;
+        try {
+            field.setAccessible(true);
+            Class<?> type = field.getType();
+            MethodHandle get = MethodHandles.lookup().unreflectGetter(field);
+            MethodHandle set = MethodHandles.lookup().unreflectSetter(field);
+            this.typedGetter = get.asType(MethodType.methodType(type, Object.class));
+            this.typedSetter = set.asType(MethodType.methodType(void.class, Object.class, type));
+            this.getter = get.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = set.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.copier = MethodHandles.permuteArguments(
+                    MethodHandles.filterArguments(typedSetter, 1, typedGetter),
+                    MethodType.methodType(void.class, Object.class, Object.class), 1, 0);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new SerializerException(String.format("Couldn't access %s", field), e);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public Object get(Object obj) {
+        try {
+            return (Object) getter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void set(Object obj, Object value) {
+        try {
+            setter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Copies the field value from one object to another without boxing.
+     */
+    public void copy(Object from, Object to) {
+        try {
+            copier.invokeExact(from, to);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public boolean getBoolean(Object obj) {
+        try {
+            return (boolean) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setBoolean(Object obj, boolean value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public byte getByte(Object obj) {
+        try {
+            return (byte) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setByte(Object obj, byte value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public short getShort(Object obj) {
+        try {
+            return (short) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setShort(Object obj, short value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public int getInt(Object obj) {
+        try {
+            return (int) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setInt(Object obj, int value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLong(Object obj) {
+        try {
+            return (long) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setLong(Object obj, long value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public float getFloat(Object obj) {
+        try {
+            return (float) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setFloat(Object obj, float value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public double getDouble(Object obj) {
+        try {
+            return (double) typedGetter.invokeExact(obj);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setDouble(Object obj, double value) {
+        try {
+            typedSetter.invokeExact(obj, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new SerializerException(e);
+    }
+
+    @Override
+    public String toString() {
+        return "FieldAccessor[" + field + "]";
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Value of a {@link acmi.l2.clientmod.io.annotation.Lazy} field.
+ * Until {@link #get()} is called it only holds the encoded bytes, which are written back verbatim.
+ * <p>
+ * {@link #equals} compares encoded bytes while both values are undecoded and {@link #hashCode} is the array length,
+ * so neither forces decoding.
+ */
+public final class LazyValue<T> {
+    private ByteBuffer encoded;
+    private int length;
+    private Function<ByteBuffer, T> decoder;
+    private T value;
+
+    public LazyValue() {
+    }
+
+    public LazyValue(T value) {
+        this.value = value;
+    }
+
+    LazyValue(ByteBuffer encoded, int length, Function<ByteBuffer, T> decoder) {
+        this.encoded = encoded;
+        this.length = length;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Value given in its encoded form, the length prefix followed by {@code length} elements. {@code decoder} receives
+     * a duplicate of {@code encoded} on the first {@link #get()}.
+     */
+    public static <T> LazyValue<T> encoded(ByteBuffer encoded, int length, Function<ByteBuffer, T> decoder) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length < 0");
+        }
+        return new LazyValue<>(Objects.requireNonNull(encoded).duplicate(), length, Objects.requireNonNull(decoder));
+    }
+
+    public synchronized T get() {
+        if (decoder != null) {
+            value = decoder.apply(encoded.duplicate());
+            decoder = null;
+            encoded = null;
+        }
+        return value;
+    }
+
+    public synchronized void set(T value) {
+        this.value = value;
+        this.decoder = null;
+        this.encoded = null;
+    }
+
+    public synchronized boolean isDecoded() {
+        return decoder == null;
+    }
+
+    /**
+     * Encoded bytes while the value has not been decoded yet, otherwise {@code null}.
+     */
+    synchronized ByteBuffer encoded() {
+        return encoded == null ? null : encoded.duplicate();
+    }
+
+    /**
+     * Read-only view of the encoded bytes while the value has not been decoded yet, otherwise {@code null}.
+     */
+    public synchronized ByteBuffer getEncoded() {
+        return encoded == null ? null : encoded.asReadOnlyBuffer();
+    }
+
+    /**
+     * Array length of the value, or the value hash code when it is not an array. Known without decoding.
+     */
+    private synchronized int shallowHash() {
+        if (decoder != null) {
+            return length;
+        }
+        if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return Objects.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LazyValue<?> other = (LazyValue<?>) o;
+        if (shallowHash() != other.shallowHash()) return false;
+        ByteBuffer encoded = encoded();
+        ByteBuffer otherEncoded = other.encoded();
+        if (encoded != null && otherEncoded != null) {
+            return encoded.equals(otherEncoded);
+        }
+        return Objects.deepEquals(get(), other.get());
+    }
+
+    @Override
+    public int hashCode() {
+        return shallowHash();
+    }
+
+    @Override
+    public String toString() {
+        ByteBuffer encoded = encoded();
+        if (encoded != null) {
+            return "LazyValue[" + encoded.remaining() + " bytes]";
+        }
+        String str = Arrays.deepToString(new Object[]{get()});
+        return str.substring(1, str.length() - 1);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static acmi.l2.clientmod.io.FieldAccessor.rethrow;
+
+/**
+ * Instance method invocation through a method handle resolved once per method.
+ */
+public final class MethodAccessor {
+    private final Method method;
+    private final MethodHandle handle;
+    private final MethodHandle unary;
+
+    MethodAccessor(Method method) {
+        this.method = method;
+        try {
+            method.setAccessible(true);
+            this.handle = MethodHandles.lookup().unreflect(method);
+            this.unary = !Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 1 ?
+                    handle.asType(MethodType.methodType(void.class, Object.class, Object.class)) : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new SerializerException(String.format("Couldn't access %s", method), e);
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Invokes a single-parameter instance method such as a {@code @ReadMethod}/{@code @WriteMethod} hook
+     * without allocating an argument array.
+     */
+    public void invoke(Object obj, Object param) {
+        if (unary == null) {
+            invoke(obj, new Object[]{param});
+            return;
+        }
+
+        try {
+            unary.invokeExact(obj, param);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public Object invoke(Object obj, Object... params) {
+        try {
+            if (Modifier.isStatic(method.getModifiers())) {
+                return handle.invokeWithArguments(params);
+            }
+            Object[] args = new Object[params.length + 1];
+            args[0] = obj;
+            System.arraycopy(params, 0, args, 1, params.length);
+            return handle.invokeWithArguments(args);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MethodAccessor[" + method + "]";
+    }
+}
@@ -60,11 +60,76 @@ public interface ObjectInput<C extends Context> extends DataInput {
                 return dataInput.readUnsignedByte();
             }
 
+            @Override
+            public void skip(int n) throws UncheckedIOException {
+                dataInput.skip(n);
+            }
+
             @Override
             public void readFully(byte[] b, int off, int len) throws UncheckedIOException {
                 dataInput.readFully(b, off, len);
             }
 
+            @Override
+            public int readUnsignedShort() throws UncheckedIOException {
+                return dataInput.readUnsignedShort();
+            }
+
+            @Override
+            public int readInt() throws UncheckedIOException {
+                return dataInput.readInt();
+            }
+
+            @Override
+            public int readCompactInt() throws UncheckedIOException {
+                return dataInput.readCompactInt();
+            }
+
+            @Override
+            public long readLong() throws UncheckedIOException {
+                return dataInput.readLong();
+            }
+
+            @Override
+            public float readFloat() throws UncheckedIOException {
+                return dataInput.readFloat();
+            }
+
+            @Override
+            public String readLine() throws UncheckedIOException {
+                return dataInput.readLine();
+            }
+
+            @Override
+            public String readUTF() throws UncheckedIOException {
+                return dataInput.readUTF();
+            }
+
+            @Override
+            public byte[] readByteArray() throws UncheckedIOException {
+                return dataInput.readByteArray();
+            }
+
+            @Override
+            public void readShorts(short[] b, int off, int len) throws UncheckedIOException {
+                dataInput.readShorts(b, off, len);
+            }
+
+            @Override
+            public void readInts(int[] b, int off, int len) throws UncheckedIOException {
+                dataInput.readInts(b, off, len);
+            }
+
+            @Override
+            public void readLongs(long[] b, int off, int len) throws UncheckedIOException {
+                dataInput.readLongs(b, off, len);
+            }
+
+            @Override
+            public void readFloats(float[] b, int off, int len) throws UncheckedIOException {
+                dataInput.readFloats(b, off, len);
+            }
+
             @Override
             public Charset getCharset() {
                 return dataInput.getCharset();
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * {@link ObjectInput} reading straight from a heap or direct buffer.
+ * A little-endian view of the buffer is read from its current position, the buffer itself is left as is.
+ */
+public class ObjectInputBuffer<T extends Context> implements ObjectInput<T> {
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int position;
+    private final SerializerFactory<T> serializerFactory;
+    private final T context;
+
+    public ObjectInputBuffer(ByteBuffer buffer, Charset charset, SerializerFactory<T> serializerFactory, T context) {
+        this(buffer, charset, 0, serializerFactory, context);
+    }
+
+    public ObjectInputBuffer(ByteBuffer buffer, Charset charset, int position, SerializerFactory<T> serializerFactory, T context) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.charset = charset;
+        this.position = position - buffer.position();
+        this.serializerFactory = serializerFactory;
+        this.context = context;
+    }
+
+    /**
+     * The view being read, positioned after the data read so far.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public SerializerFactory<T> getSerializerFactory() {
+        return serializerFactory;
+    }
+
+    @Override
+    public T getContext() {
+        return context;
+    }
+
+    @Override
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int getPosition() {
+        return position + buffer.position();
+    }
+
+    @Override
+    public void skip(int n) throws UncheckedIOException {
+        if (n <= 0) {
+            return;
+        }
+        if (n > buffer.remaining()) {
+            throw underflow(new BufferUnderflowException());
+        }
+        buffer.position(buffer.position() + n);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws UncheckedIOException {
+        try {
+            buffer.get(b, off, len);
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public int readUnsignedByte() throws UncheckedIOException {
+        try {
+            return buffer.get() & 0xff;
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public int readUnsignedShort() throws UncheckedIOException {
+        try {
+            return buffer.getShort() & 0xffff;
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public int readInt() throws UncheckedIOException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public int readCompactInt() throws UncheckedIOException {
+        try {
+            int b = buffer.get();
+            int output = b & 0x3f;
+            if ((b & 0x40) != 0) {
+                for (int shift = 6; ; shift += 7) {
+                    int x = buffer.get();
+                    if (shift == 6 + 3 * 7) {
+                        output |= (x & 0x1f) << shift;
+                        break;
+                    }
+                    output |= (x & 0x7f) << shift;
+                    if ((x & 0x80) == 0) {
+                        break;
+                    }
+                }
+            }
+            if ((b & 0x80) != 0) {
+                return output == 0 ? Integer.MIN_VALUE : -output;
+            }
+            return output;
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public long readLong() throws UncheckedIOException {
+        try {
+            return buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public float readFloat() throws UncheckedIOException {
+        try {
+            return buffer.getFloat();
+        } catch (BufferUnderflowException e) {
+            throw underflow(e);
+        }
+    }
+
+    @Override
+    public void readShorts(short[] b, int off, int len) throws UncheckedIOException {
+        require(len, Short.BYTES);
+        buffer.asShortBuffer().get(b, off, len);
+        buffer.position(buffer.position() + len * Short.BYTES);
+    }
+
+    @Override
+    public void readInts(int[] b, int off, int len) throws UncheckedIOException {
+        require(len, Integer.BYTES);
+        buffer.asIntBuffer().get(b, off, len);
+        buffer.position(buffer.position() + len * Integer.BYTES);
+    }
+
+    @Override
+    public void readLongs(long[] b, int off, int len) throws UncheckedIOException {
+        require(len, Long.BYTES);
+        buffer.asLongBuffer().get(b, off, len);
+        buffer.position(buffer.position() + len * Long.BYTES);
+    }
+
+    @Override
+    public void readFloats(float[] b, int off, int len) throws UncheckedIOException {
+        require(len, Float.BYTES);
+        buffer.asFloatBuffer().get(b, off, len);
+        buffer.position(buffer.position() + len * Float.BYTES);
+    }
+
+    private void require(int len, int size) {
+        if ((long) len * size > buffer.remaining()) {
+            throw underflow(new BufferUnderflowException());
+        }
+    }
+
+    private static UncheckedIOException underflow(BufferUnderflowException e) {
+        return new UncheckedIOException(new IOException(e));
+    }
+}
@@ -60,6 +60,76 @@ public interface ObjectOutput<C extends Context> extends DataOutput {
                 dataOutput.writeBytes(b, off, len);
             }
 
+            @Override
+            public void writeShort(int val) throws UncheckedIOException {
+                dataOutput.writeShort(val);
+            }
+
+            @Override
+            public void writeInt(int val) throws UncheckedIOException {
+                dataOutput.writeInt(val);
+            }
+
+            @Override
+            public void writeCompactInt(int val) throws UncheckedIOException {
+                dataOutput.writeCompactInt(val);
+            }
+
+            @Override
+            public void writeLong(long val) throws UncheckedIOException {
+                dataOutput.writeLong(val);
+            }
+
+            @Override
+            public void writeFloat(float val) throws UncheckedIOException {
+                dataOutput.writeFloat(val);
+            }
+
+            @Override
+            public void writeBytes(String s) throws UncheckedIOException {
+                dataOutput.writeBytes(s);
+            }
+
+            @Override
+            public void writeChars(String s) throws UncheckedIOException {
+                dataOutput.writeChars(s);
+            }
+
+            @Override
+            public void writeLine(String s) throws UncheckedIOException {
+                dataOutput.writeLine(s);
+            }
+
+            @Override
+            public void writeUTF(String s) throws UncheckedIOException {
+                dataOutput.writeUTF(s);
+            }
+
+            @Override
+            public void writeByteArray(byte[] array) throws UncheckedIOException {
+                dataOutput.writeByteArray(array);
+            }
+
+            @Override
+            public void writeShorts(short[] b, int off, int len) throws UncheckedIOException {
+                dataOutput.writeShorts(b, off, len);
+            }
+
+            @Override
+            public void writeInts(int[] b, int off, int len) throws UncheckedIOException {
+                dataOutput.writeInts(b, off, len);
+            }
+
+            @Override
+            public void writeLongs(long[] b, int off, int len) throws UncheckedIOException {
+                dataOutput.writeLongs(b, off, len);
+            }
+
+            @Override
+            public void writeFloats(float[] b, int off, int len) throws UncheckedIOException {
+                dataOutput.writeFloats(b, off, len);
+            }
+
             @Override
             public Charset getCharset() {
                 return dataOutput.getCharset();
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.Charset;
+
+/**
+ * {@link ObjectOutput} writing straight into a heap or direct buffer.
+ * A little-endian view of the buffer is written from its current position, the buffer itself is left as is.
+ */
+public class ObjectOutputBuffer<T extends Context> implements ObjectOutput<T> {
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int position;
+    private final SerializerFactory<T> serializerFactory;
+    private final T context;
+
+    public ObjectOutputBuffer(ByteBuffer buffer, Charset charset, SerializerFactory<T> serializerFactory, T context) {
+        this(buffer, charset, 0, serializerFactory, context);
+    }
+
+    public ObjectOutputBuffer(ByteBuffer buffer, Charset charset, int position, SerializerFactory<T> serializerFactory, T context) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.charset = charset;
+        this.position = position - buffer.position();
+        this.serializerFactory = serializerFactory;
+        this.context = context;
+    }
+
+    /**
+     * The view being written, positioned after the data written so far.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public SerializerFactory<T> getSerializerFactory() {
+        return serializerFactory;
+    }
+
+    @Override
+    public T getContext() {
+        return context;
+    }
+
+    @Override
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int getPosition() {
+        return position + buffer.position();
+    }
+
+    @Override
+    public void writeByte(int b) throws UncheckedIOException {
+        try {
+            buffer.put((byte) b);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int off, int len) throws UncheckedIOException {
+        try {
+            buffer.put(b, off, len);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeShort(int val) throws UncheckedIOException {
+        try {
+            buffer.putShort((short) val);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeInt(int val) throws UncheckedIOException {
+        try {
+            buffer.putInt(val);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeCompactInt(int val) throws UncheckedIOException {
+        try {
+            int b = val < 0 ? 0x80 : 0;
+            val = Math.abs(val);
+            b |= val & 0x3f;
+            val >>= 6;
+            if (val <= 0) {
+                buffer.put((byte) b);
+                return;
+            }
+            buffer.put((byte) (b | 0x40));
+            for (; ; ) {
+                b = val & 0x7f;
+                val >>= 7;
+                if (val == 0) {
+                    buffer.put((byte) b);
+                    return;
+                }
+                buffer.put((byte) (b | 0x80));
+            }
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeLong(long val) throws UncheckedIOException {
+        try {
+            buffer.putLong(val);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeFloat(float val) throws UncheckedIOException {
+        try {
+            buffer.putFloat(val);
+        } catch (BufferOverflowException | ReadOnlyBufferException e) {
+            throw overflow(e);
+        }
+    }
+
+    @Override
+    public void writeShorts(short[] b, int off, int len) throws UncheckedIOException {
+        require(len, Short.BYTES);
+        buffer.asShortBuffer().put(b, off, len);
+        buffer.position(buffer.position() + len * Short.BYTES);
+    }
+
+    @Override
+    public void writeInts(int[] b, int off, int len) throws UncheckedIOException {
+        require(len, Integer.BYTES);
+        buffer.asIntBuffer().put(b, off, len);
+        buffer.position(buffer.position() + len * Integer.BYTES);
+    }
+
+    @Override
+    public void writeLongs(long[] b, int off, int len) throws UncheckedIOException {
+        require(len, Long.BYTES);
+        buffer.asLongBuffer().put(b, off, len);
+        buffer.position(buffer.position() + len * Long.BYTES);
+    }
+
+    @Override
+    public void writeFloats(float[] b, int off, int len) throws UncheckedIOException {
+        require(len, Float.BYTES);
+        buffer.asFloatBuffer().put(b, off, len);
+        buffer.position(buffer.position() + len * Float.BYTES);
+    }
+
+    private void require(int len, int size) {
+        if (buffer.isReadOnly()) {
+            throw overflow(new ReadOnlyBufferException());
+        }
+        if ((long) len * size > buffer.remaining()) {
+            throw overflow(new BufferOverflowException());
+        }
+    }
+
+    private static UncheckedIOException overflow(RuntimeException e) {
+        return new UncheckedIOException(new IOException(e));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+import static acmi.l2.clientmod.io.ByteUtil.sizeOfCompactInt;
+
+/**
+ * {@link ObjectOutput} that only counts the bytes written to it.
+ */
+public class ObjectSizeCounter<T extends Context> implements ObjectOutput<T> {
+    private final Charset charset;
+    private final int position;
+    private final SerializerFactory<T> serializerFactory;
+    private final T context;
+    private int size;
+
+    public ObjectSizeCounter(Charset charset, SerializerFactory<T> serializerFactory, T context) {
+        this(charset, 0, serializerFactory, context);
+    }
+
+    public ObjectSizeCounter(Charset charset, int position, SerializerFactory<T> serializerFactory, T context) {
+        this.charset = charset;
+        this.position = position;
+        this.serializerFactory = serializerFactory;
+        this.context = context;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public SerializerFactory<T> getSerializerFactory() {
+        return serializerFactory;
+    }
+
+    @Override
+    public T getContext() {
+        return context;
+    }
+
+    @Override
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int getPosition() {
+        return position + size;
+    }
+
+    @Override
+    public void writeByte(int b) {
+        size++;
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        size += len;
+    }
+
+    @Override
+    public void writeShort(int val) {
+        size += Short.BYTES;
+    }
+
+    @Override
+    public void writeInt(int val) {
+        size += Integer.BYTES;
+    }
+
+    @Override
+    public void writeCompactInt(int val) {
+        size += sizeOfCompactInt(val);
+    }
+
+    @Override
+    public void writeLong(long val) {
+        size += Long.BYTES;
+    }
+
+    @Override
+    public void writeFloat(float val) {
+        size += Float.BYTES;
+    }
+
+    @Override
+    public void writeUTF(String s) {
+        size += Integer.BYTES + (s == null ? 0 : s.length() * 2);
+    }
+
+    @Override
+    public void writeChars(String s) {
+        if (s == null || s.isEmpty()) {
+            writeCompactInt(0);
+        } else {
+            int len = (s.length() + 1) * 2;
+            size += sizeOfCompactInt(-len) + len;
+        }
+    }
+
+    @Override
+    public void writeShorts(short[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        size += len * Short.BYTES;
+    }
+
+    @Override
+    public void writeInts(int[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        size += len * Integer.BYTES;
+    }
+
+    @Override
+    public void writeLongs(long[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        size += len * Long.BYTES;
+    }
+
+    @Override
+    public void writeFloats(float[] b, int off, int len) {
+        Objects.checkFromIndexSize(off, len, b.length);
+        size += len * Float.BYTES;
+    }
+}
@@ -29,23 +29,69 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
 
 public class ReflectionSerializerFactory<C extends Context> implements SerializerFactory<C> {
-    protected final Map<Class, Serializer> cache = new HashMap<>();
+    /**
+     * Fully built serializers only; a serializer becomes visible here after its actions are complete.
+     */
+    protected final Map<Class, Serializer> cache = new ConcurrentHashMap<>();
+    private final Map<Class, Object> buildLocks = new ConcurrentHashMap<>();
+    /**
+     * Serializers the current thread is still building, so recursive lookups get the unfinished instance.
+     */
+    private final ThreadLocal<Map<Class, Serializer>> building = ThreadLocal.withInitial(HashMap::new);
+    private volatile SerializerListener listener;
+
+    public SerializerListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Installs a listener for read and write timings, {@code null} to disable.
+     * Field level events are only reported by serializers built while a field level listener is installed.
+     */
+    public void setListener(SerializerListener listener) {
+        this.listener = listener;
+    }
+
+    protected boolean isFieldInstrumented() {
+        SerializerListener listener = this.listener;
+        return listener != null && listener.isFieldLevel();
+    }
 
     @Override
     public <T> Serializer<T, C> forClass(Class<T> clazz) {
-        if (!cache.containsKey(clazz)) {
-            createForClass(clazz);
+        Serializer serializer = cache.get(clazz);
+        if (serializer != null) {
+            return serializer;
+        }
+        serializer = building.get().get(clazz);
+        if (serializer != null) {
+            return serializer;
         }
-        return cache.get(clazz);
+        // Eager build dependencies only follow the superclass chain, so per-class locks are always taken subclass first.
+        synchronized (buildLocks.computeIfAbsent(clazz, c -> new Object())) {
+            serializer = cache.get(clazz);
+            if (serializer == null) {
+                createForClass(clazz);
+                serializer = cache.get(clazz);
+            }
+        }
+        return serializer;
     }
 
     protected void createForClass(Class<?> clazz) {
@@ -54,9 +100,14 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
 
         Serializer<?, C> serializer = createSerializer(clazz, readActions, writeActions);
 
-        cache.put(clazz, serializer);
-
-        buildForClass(clazz, readActions, writeActions);
+        Map<Class, Serializer> inProgress = building.get();
+        inProgress.put(clazz, serializer);
+        try {
+            buildForClass(clazz, readActions, writeActions);
+            cache.put(clazz, serializer);
+        } finally {
+            inProgress.remove(clazz);
+        }
     }
 
     protected Serializer<?, C> createSerializer(Class<?> clazz, List<BiConsumer<Object, ObjectInput<C>>> readActions, List<BiConsumer<Object, ObjectOutput<C>>> writeActions) {
@@ -84,24 +135,20 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
 
         List<BiConsumer<T, ObjectInput<C>>> read1 = new ArrayList<>();
         List<BiConsumer<T, ObjectOutput<C>>> write1 = new ArrayList<>();
-        for (Field field : clazz.getDeclaredFields()) {
-            if (!validField(field)) {
-                continue;
-            }
-
-            handleField(field, read1, write1);
-        }
+        buildFields(clazz, read1, write1);
 
         boolean readMethod = false;
         boolean writeMethod = false;
         for (Method method : clazz.getDeclaredMethods()) {
             if (method.isAnnotationPresent(ReadMethod.class)) {
-                read.add((o, dataInput) -> ReflectionUtil.invokeMethod(method, o, dataInput));
+                MethodAccessor accessor = ReflectionUtil.methodAccessor(method);
+                read.add(accessor::invoke);
                 readMethod = true;
             }
 
             if (method.isAnnotationPresent(WriteMethod.class)) {
-                write.add((o, dataOutput) -> ReflectionUtil.invokeMethod(method, o, dataOutput));
+                MethodAccessor accessor = ReflectionUtil.methodAccessor(method);
+                write.add(accessor::invoke);
                 writeMethod = true;
             }
         }
@@ -113,6 +160,53 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
         }
     }
 
+    protected <T> void buildFields(Class<?> clazz, List<BiConsumer<T, ObjectInput<C>>> read, List<BiConsumer<T, ObjectOutput<C>>> write) {
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!validField(field)) {
+                continue;
+            }
+
+            int readFrom = read.size();
+            int writeFrom = write.size();
+            handleField(field, read, write);
+            if (isFieldInstrumented()) {
+                instrument(field, read, readFrom, write, writeFrom);
+            }
+        }
+    }
+
+    private <T> void instrument(Field field, List<BiConsumer<T, ObjectInput<C>>> read, int readFrom, List<BiConsumer<T, ObjectOutput<C>>> write, int writeFrom) {
+        Class<?> clazz = field.getDeclaringClass();
+        for (int i = readFrom; i < read.size(); i++) {
+            BiConsumer<T, ObjectInput<C>> action = read.get(i);
+            read.set(i, (obj, input) -> {
+                SerializerListener listener = this.listener;
+                if (listener == null) {
+                    action.accept(obj, input);
+                    return;
+                }
+                int position = input.getPosition();
+                long start = System.nanoTime();
+                action.accept(obj, input);
+                listener.onRead(clazz, field, input.getPosition() - position, System.nanoTime() - start);
+            });
+        }
+        for (int i = writeFrom; i < write.size(); i++) {
+            BiConsumer<T, ObjectOutput<C>> action = write.get(i);
+            write.set(i, (obj, output) -> {
+                SerializerListener listener = this.listener;
+                if (listener == null || output instanceof ObjectSizeCounter) {
+                    action.accept(obj, output);
+                    return;
+                }
+                int position = output.getPosition();
+                long start = System.nanoTime();
+                action.accept(obj, output);
+                listener.onWrite(clazz, field, output.getPosition() - position, System.nanoTime() - start);
+            });
+        }
+    }
+
     protected boolean validField(Field field) {
         return !Modifier.isStatic(field.getModifiers()) &&
                 !Modifier.isTransient(field.getModifiers()) &&
@@ -120,30 +214,188 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
     }
 
     protected <T> void handleField(Field field, List<BiConsumer<T, ObjectInput<C>>> readActions, List<BiConsumer<T, ObjectOutput<C>>> writeActions) {
-        field.setAccessible(true);
+        FieldAccessor accessor = ReflectionUtil.fieldAccessor(field);
 
         Custom custom = field.getAnnotation(Custom.class);
-        if (custom != null) {
-            if (!cache.containsKey(custom.value())) {
-                cache.put(custom.value(), ReflectionUtil.instantiate(custom.value()));
-            }
-            Serializer customSerializer = cache.get(custom.value());
+        if (field.isAnnotationPresent(Lazy.class)) {
+            lazySerializer(field, accessor, readActions, writeActions);
+        } else if (custom != null) {
+            Serializer customSerializer = cache.computeIfAbsent(custom.value(), type -> (Serializer) ReflectionUtil.instantiate(type));
             readActions.add((object, input) -> {
                 Object obj = customSerializer.instantiate(input);
                 customSerializer.readObject(obj, input);
-                ReflectionUtil.fieldSet(field, object, obj);
+                accessor.set(object, obj);
             });
-            writeActions.add((object, output) -> customSerializer.writeObject(ReflectionUtil.fieldGet(field, object), output));
-        } else {
+            writeActions.add((object, output) -> customSerializer.writeObject(accessor.get(object), output));
+        } else if (!primitiveSerializer(field, accessor, readActions, writeActions)) {
             serializer(field.getType(),
-                    object -> ReflectionUtil.fieldGet(field, object),
-                    (obj, val) -> ReflectionUtil.fieldSet(field, obj, val.get()),
+                    accessor::get,
+                    (obj, val) -> accessor.set(obj, val.get()),
                     field::getAnnotation,
                     readActions,
                     writeActions);
         }
     }
 
+    /**
+     * Reads and writes primitive fields through the typed accessors, so values are not boxed.
+     * Returns false for other field types.
+     */
+    private <T> boolean primitiveSerializer(Field field, FieldAccessor accessor, List<BiConsumer<T, ObjectInput<C>>> readActions, List<BiConsumer<T, ObjectOutput<C>>> writeActions) {
+        Class<?> type = field.getType();
+        if (type == Byte.TYPE) {
+            readActions.add((object, input) -> accessor.setByte(object, (byte) input.readUnsignedByte()));
+            writeActions.add((object, output) -> output.writeByte(accessor.getByte(object)));
+        } else if (type == Short.TYPE) {
+            readActions.add((object, input) -> accessor.setShort(object, (short) input.readUnsignedShort()));
+            writeActions.add((object, output) -> output.writeShort(accessor.getShort(object)));
+        } else if (type == Integer.TYPE) {
+            if (field.isAnnotationPresent(Compact.class)) {
+                readActions.add((object, input) -> accessor.setInt(object, input.readCompactInt()));
+                writeActions.add((object, output) -> output.writeCompactInt(accessor.getInt(object)));
+            } else if (field.isAnnotationPresent(UShort.class)) {
+                readActions.add((object, input) -> accessor.setInt(object, input.readUnsignedShort()));
+                writeActions.add((object, output) -> output.writeShort(accessor.getInt(object)));
+            } else if (field.isAnnotationPresent(UByte.class)) {
+                readActions.add((object, input) -> accessor.setInt(object, input.readUnsignedByte()));
+                writeActions.add((object, output) -> output.writeByte(accessor.getInt(object)));
+            } else {
+                readActions.add((object, input) -> accessor.setInt(object, input.readInt()));
+                writeActions.add((object, output) -> output.writeInt(accessor.getInt(object)));
+            }
+        } else if (type == Long.TYPE) {
+            readActions.add((object, input) -> accessor.setLong(object, input.readLong()));
+            writeActions.add((object, output) -> output.writeLong(accessor.getLong(object)));
+        } else if (type == Float.TYPE) {
+            readActions.add((object, input) -> accessor.setFloat(object, input.readFloat()));
+            writeActions.add((object, output) -> output.writeFloat(accessor.getFloat(object)));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private <T> void lazySerializer(Field field, FieldAccessor accessor, List<BiConsumer<T, ObjectInput<C>>> readActions, List<BiConsumer<T, ObjectOutput<C>>> writeActions) {
+        Type valueType = field.getGenericType() instanceof ParameterizedType ?
+                ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0] : null;
+        if (field.getType() != LazyValue.class || !(valueType instanceof Class) || !((Class<?>) valueType).isArray()) {
+            throw new SerializerException("@Lazy field must be LazyValue<array type>: " + field);
+        }
+        Class<?> type = (Class<?>) valueType;
+        int elementSize = fixedSize(type.getComponentType(), field::getAnnotation);
+        if (elementSize < 0) {
+            throw new SerializerException("@Lazy field elements must have a fixed size: " + field);
+        }
+
+        Length length = field.getAnnotation(Length.class);
+        Function<DataInput, Integer> lenReader = lengthReader(length);
+        BiConsumer<DataOutput, Integer> lenWriter = lengthWriter(length);
+        List<BiConsumer<ElementSlot, ObjectInput<C>>> arrayRead = new ArrayList<>();
+        List<BiConsumer<ElementSlot, ObjectOutput<C>>> arrayWrite = new ArrayList<>();
+        serializer(type, slot -> slot.value, (slot, val) -> slot.value = val.get(), field::getAnnotation, arrayRead, arrayWrite);
+
+        readActions.add((object, input) -> {
+            SerializerFactory<C> serializerFactory = input.getSerializerFactory();
+            Charset charset = input.getCharset();
+            C context = input.getContext();
+            accessor.set(object, readLazy(input, lenReader, lenWriter, elementSize, buffer -> {
+                ObjectInput<C> in = new ObjectInputBuffer<>(buffer, charset, serializerFactory, context);
+                ElementSlot slot = new ElementSlot();
+                arrayRead.forEach(action -> action.accept(slot, in));
+                return slot.value;
+            }));
+        });
+        writeActions.add((object, output) -> {
+            LazyValue<?> value = (LazyValue<?>) accessor.get(object);
+            ByteBuffer encoded = value.encoded();
+            if (encoded != null) {
+                if (encoded.hasArray()) {
+                    output.writeBytes(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+                } else {
+                    byte[] bytes = new byte[encoded.remaining()];
+                    encoded.get(bytes);
+                    output.writeBytes(bytes);
+                }
+            } else {
+                ElementSlot slot = new ElementSlot();
+                slot.value = value.get();
+                arrayWrite.forEach(action -> action.accept(slot, output));
+            }
+        });
+    }
+
+    /**
+     * Keeps the length prefix and the elements of a fixed-width array undecoded,
+     * as a slice of the input buffer when there is one.
+     */
+    private static <T> LazyValue<T> readLazy(ObjectInput<?> input, Function<DataInput, Integer> lenReader, BiConsumer<DataOutput, Integer> lenWriter, int elementSize, Function<ByteBuffer, T> decoder) {
+        if (input instanceof ObjectInputBuffer) {
+            ByteBuffer buffer = ((ObjectInputBuffer<?>) input).getBuffer();
+            int start = buffer.position();
+            int count = lenReader.apply(input);
+            input.skip(Math.multiplyExact(count, elementSize));
+            return new LazyValue<>(buffer.slice(start, buffer.position() - start), count, decoder);
+        }
+
+        int count = lenReader.apply(input);
+        int size = Math.multiplyExact(count, elementSize);
+        ByteBuffer encoded = ByteBuffer.allocate(5 + size);
+        lenWriter.accept(DataOutput.dataOutput(encoded, input.getCharset()), count);
+        input.readFully(encoded.array(), encoded.position(), size);
+        encoded.limit(encoded.position() + size);
+        encoded.position(0);
+        return new LazyValue<>(encoded, count, decoder);
+    }
+
+    /**
+     * Encoded size of a value of {@code type}, or -1 when it depends on the value.
+     */
+    protected int fixedSize(Class<?> type, Function<Class<? extends Annotation>, Annotation> getAnnotation) {
+        if (type == Byte.TYPE || type == Byte.class) {
+            return 1;
+        } else if (type == Short.TYPE || type == Short.class) {
+            return 2;
+        } else if (type == Integer.TYPE || type == Integer.class) {
+            if (getAnnotation.apply(Compact.class) != null) {
+                return -1;
+            } else if (getAnnotation.apply(UShort.class) != null) {
+                return 2;
+            } else if (getAnnotation.apply(UByte.class) != null) {
+                return 1;
+            }
+            return 4;
+        } else if (type == Long.TYPE || type == Long.class) {
+            return 8;
+        } else if (type == Float.TYPE || type == Float.class) {
+            return 4;
+        } else if (type.isPrimitive() || type.isArray() || type.isInterface() || type == String.class || type == Object.class) {
+            return -1;
+        }
+
+        int size = 0;
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(ReadMethod.class) || method.isAnnotationPresent(WriteMethod.class)) {
+                    return -1;
+                }
+            }
+            for (Field field : c.getDeclaredFields()) {
+                if (!validField(field)) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(Custom.class) || field.isAnnotationPresent(Lazy.class)) {
+                    return -1;
+                }
+                int fieldSize = fixedSize(field.getType(), field::getAnnotation);
+                if (fieldSize < 0) {
+                    return -1;
+                }
+                size += fieldSize;
+            }
+        }
+        return size;
+    }
+
     protected <T> void serializer(Class type,
                                   Function<T, Object> getter, BiConsumer<T, Supplier> setter,
                                   Function<Class<? extends Annotation>, Annotation> getAnnotation,
@@ -184,54 +436,8 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
                 write.add((object, dataOutput) -> dataOutput.writeLine(((String) getter.apply(object))));
             }
         } else if (type.isArray()) {
-            Class componentType = type.getComponentType();
             Length length = (Length) getAnnotation.apply(Length.class);
-            Function<DataInput, Integer> lenReader;
-            BiConsumer<DataOutput, Integer> lenWriter;
-            if (length != null) {
-                if (length.value() == Length.Type.BYTE) {
-                    lenReader = DataInput::readUnsignedByte;
-                    lenWriter = DataOutput::writeByte;
-                } else if (length.value() == Length.Type.INT) {
-                    lenReader = DataInput::readInt;
-                    lenWriter = DataOutput::writeInt;
-                } else if (length.value() == Length.Type.CONST) {
-                    lenReader = input -> length.length();
-                    lenWriter = (output, len) -> {};
-                } else {
-                    lenReader = DataInput::readCompactInt;
-                    lenWriter = DataOutput::writeCompactInt;
-                }
-            } else {
-                lenReader = DataInput::readCompactInt;
-                lenWriter = DataOutput::writeCompactInt;
-            }
-            read.add((object, dataInput) -> {
-                Object array = Array.newInstance(componentType, lenReader.apply(dataInput));
-                for (int i = 0; i < Array.getLength(array); i++) {
-                    int ind = i;
-                    List<BiConsumer<Object, ObjectInput<C>>> arrayRead = new ArrayList<>();
-                    List<BiConsumer<Object, ObjectOutput<C>>> arrayWrite = new ArrayList<>();
-                    serializer(componentType, arr -> Array.get(arr, ind), (arr, val) -> Array.set(arr, ind, val.get()), getAnnotation, arrayRead, arrayWrite);
-                    for (BiConsumer<Object, ObjectInput<C>> ra : arrayRead) {
-                        ra.accept(array, dataInput);
-                    }
-                }
-                setter.accept(object, () -> array);
-            });
-            write.add((object, dataOutput) -> {
-                Object array = getter.apply(object);
-                lenWriter.accept(dataOutput, Array.getLength(array));
-                for (int i = 0; i < Array.getLength(array); i++) {
-                    int ind = i;
-                    List<BiConsumer<Object, ObjectInput<C>>> arrayRead = new ArrayList<>();
-                    List<BiConsumer<Object, ObjectOutput<C>>> arrayWrite = new ArrayList<>();
-                    serializer(componentType, arr -> Array.get(arr, ind), (arr, val) -> Array.set(arr, ind, val.get()), getAnnotation, arrayRead, arrayWrite);
-                    for (BiConsumer<Object, ObjectOutput<C>> wa : arrayWrite) {
-                        wa.accept(array, dataOutput);
-                    }
-                }
-            });
+            arraySerializer(type.getComponentType(), getter, setter, getAnnotation, lengthReader(length), lengthWriter(length), read, write);
         } else {
             read.add((object, dataInput) -> {
                 Serializer typeSerializer = forClass(type);
@@ -250,14 +456,185 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
         }
     }
 
+    private static Function<DataInput, Integer> lengthReader(Length length) {
+        if (length == null) {
+            return DataInput::readCompactInt;
+        }
+        switch (length.value()) {
+            case BYTE:
+                return DataInput::readUnsignedByte;
+            case INT:
+                return DataInput::readInt;
+            case CONST:
+                return input -> length.length();
+            default:
+                return DataInput::readCompactInt;
+        }
+    }
+
+    private static BiConsumer<DataOutput, Integer> lengthWriter(Length length) {
+        if (length == null) {
+            return DataOutput::writeCompactInt;
+        }
+        switch (length.value()) {
+            case BYTE:
+                return DataOutput::writeByte;
+            case INT:
+                return DataOutput::writeInt;
+            case CONST:
+                return (output, len) -> {};
+            default:
+                return DataOutput::writeCompactInt;
+        }
+    }
+
+    private <T> void arraySerializer(Class componentType,
+                                     Function<T, Object> getter, BiConsumer<T, Supplier> setter,
+                                     Function<Class<? extends Annotation>, Annotation> getAnnotation,
+                                     Function<DataInput, Integer> lenReader, BiConsumer<DataOutput, Integer> lenWriter,
+                                     List<BiConsumer<T, ObjectInput<C>>> read,
+                                     List<BiConsumer<T, ObjectOutput<C>>> write) {
+        if (arrayCodec(componentType, getter, setter, getAnnotation, lenReader, lenWriter, read, write)) {
+            return;
+        }
+        List<BiConsumer<ElementSlot, ObjectInput<C>>> elementRead = new ArrayList<>();
+        List<BiConsumer<ElementSlot, ObjectOutput<C>>> elementWrite = new ArrayList<>();
+        serializer(componentType, slot -> slot.value, (slot, val) -> slot.value = val.get(), getAnnotation, elementRead, elementWrite);
+        read.add((object, dataInput) -> {
+            Object array = Array.newInstance(componentType, lenReader.apply(dataInput));
+            ElementSlot slot = new ElementSlot();
+            for (int i = 0; i < Array.getLength(array); i++) {
+                for (BiConsumer<ElementSlot, ObjectInput<C>> ra : elementRead) {
+                    ra.accept(slot, dataInput);
+                }
+                Array.set(array, i, slot.value);
+            }
+            setter.accept(object, () -> array);
+        });
+        write.add((object, dataOutput) -> {
+            Object array = getter.apply(object);
+            lenWriter.accept(dataOutput, Array.getLength(array));
+            ElementSlot slot = new ElementSlot();
+            for (int i = 0; i < Array.getLength(array); i++) {
+                slot.value = Array.get(array, i);
+                for (BiConsumer<ElementSlot, ObjectOutput<C>> wa : elementWrite) {
+                    wa.accept(slot, dataOutput);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads and writes primitive arrays in bulk, or element by element without boxing
+     * when the element encoding is not fixed-width.
+     */
+    private <T> boolean arrayCodec(Class componentType,
+                                   Function<T, Object> getter, BiConsumer<T, Supplier> setter,
+                                   Function<Class<? extends Annotation>, Annotation> getAnnotation,
+                                   Function<DataInput, Integer> lenReader, BiConsumer<DataOutput, Integer> lenWriter,
+                                   List<BiConsumer<T, ObjectInput<C>>> read,
+                                   List<BiConsumer<T, ObjectOutput<C>>> write) {
+        if (componentType == Byte.TYPE) {
+            read.add((object, dataInput) -> {
+                byte[] array = new byte[lenReader.apply(dataInput)];
+                dataInput.readFully(array);
+                setter.accept(object, () -> array);
+            });
+            write.add((object, dataOutput) -> {
+                byte[] array = (byte[]) getter.apply(object);
+                lenWriter.accept(dataOutput, array.length);
+                dataOutput.writeBytes(array);
+            });
+        } else if (componentType == Short.TYPE) {
+            read.add((object, dataInput) -> {
+                short[] array = new short[lenReader.apply(dataInput)];
+                dataInput.readShorts(array, 0, array.length);
+                setter.accept(object, () -> array);
+            });
+            write.add((object, dataOutput) -> {
+                short[] array = (short[]) getter.apply(object);
+                lenWriter.accept(dataOutput, array.length);
+                dataOutput.writeShorts(array, 0, array.length);
+            });
+        } else if (componentType == Integer.TYPE) {
+            ToIntFunction<DataInput> elementReader;
+            ObjIntConsumer<DataOutput> elementWriter;
+            if (getAnnotation.apply(Compact.class) != null) {
+                elementReader = DataInput::readCompactInt;
+                elementWriter = DataOutput::writeCompactInt;
+            } else if (getAnnotation.apply(UShort.class) != null) {
+                elementReader = DataInput::readUnsignedShort;
+                elementWriter = DataOutput::writeShort;
+            } else if (getAnnotation.apply(UByte.class) != null) {
+                elementReader = DataInput::readUnsignedByte;
+                elementWriter = DataOutput::writeByte;
+            } else {
+                read.add((object, dataInput) -> {
+                    int[] array = new int[lenReader.apply(dataInput)];
+                    dataInput.readInts(array, 0, array.length);
+                    setter.accept(object, () -> array);
+                });
+                write.add((object, dataOutput) -> {
+                    int[] array = (int[]) getter.apply(object);
+                    lenWriter.accept(dataOutput, array.length);
+                    dataOutput.writeInts(array, 0, array.length);
+                });
+                return true;
+            }
+            read.add((object, dataInput) -> {
+                int[] array = new int[lenReader.apply(dataInput)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = elementReader.applyAsInt(dataInput);
+                }
+                setter.accept(object, () -> array);
+            });
+            write.add((object, dataOutput) -> {
+                int[] array = (int[]) getter.apply(object);
+                lenWriter.accept(dataOutput, array.length);
+                for (int val : array) {
+                    elementWriter.accept(dataOutput, val);
+                }
+            });
+        } else if (componentType == Long.TYPE) {
+            read.add((object, dataInput) -> {
+                long[] array = new long[lenReader.apply(dataInput)];
+                dataInput.readLongs(array, 0, array.length);
+                setter.accept(object, () -> array);
+            });
+            write.add((object, dataOutput) -> {
+                long[] array = (long[]) getter.apply(object);
+                lenWriter.accept(dataOutput, array.length);
+                dataOutput.writeLongs(array, 0, array.length);
+            });
+        } else if (componentType == Float.TYPE) {
+            read.add((object, dataInput) -> {
+                float[] array = new float[lenReader.apply(dataInput)];
+                dataInput.readFloats(array, 0, array.length);
+                setter.accept(object, () -> array);
+            });
+            write.add((object, dataOutput) -> {
+                float[] array = (float[]) getter.apply(object);
+                lenWriter.accept(dataOutput, array.length);
+                dataOutput.writeFloats(array, 0, array.length);
+            });
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static final class ElementSlot {
+        Object value;
+    }
+
     protected class SerializerImpl implements Serializer<Object, C> {
         protected final Class<?> clazz;
         protected final List<BiConsumer<Object, ObjectInput<C>>> readActions;
         protected final List<BiConsumer<Object, ObjectOutput<C>>> writeActions;
 
-        private Function<ObjectInput<C>, Object> instantiator;
-        private BiConsumer<Object, ObjectInput<C>> reader;
-        private BiConsumer<Object, ObjectOutput<C>> writer;
+        private volatile Function<ObjectInput<C>, Object> instantiator;
+        private volatile BiConsumer<Object, ObjectInput<C>> reader;
+        private volatile BiConsumer<Object, ObjectOutput<C>> writer;
 
         public SerializerImpl(Class<?> clazz, List<BiConsumer<Object, ObjectInput<C>>> readActions, List<BiConsumer<Object, ObjectOutput<C>>> writeActions) {
             this.clazz = clazz;
@@ -267,8 +644,9 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
 
         @Override
         public Object instantiate(ObjectInput<C> input) throws UncheckedIOException {
+            Function<ObjectInput<C>, Object> instantiator = this.instantiator;
             if (instantiator == null) {
-                instantiator = createInstantiator(clazz);
+                this.instantiator = instantiator = createInstantiator(clazz);
             }
             return instantiator.apply(input);
         }
@@ -278,18 +656,43 @@ public class ReflectionSerializerFactory<C extends Context> implements Serialize
             if (obj == null) {
                 return;
             }
+            BiConsumer<Object, ObjectInput<C>> reader = this.reader;
             if (reader == null) {
-                reader = createReader(clazz, readActions);
+                this.reader = reader = createReader(clazz, readActions);
             }
+            SerializerListener listener = ReflectionSerializerFactory.this.listener;
+            if (listener == null) {
+                reader.accept(obj, input);
+                return;
+            }
+            int position = input.getPosition();
+            long start = System.nanoTime();
             reader.accept(obj, input);
+            listener.onRead(clazz, null, input.getPosition() - position, System.nanoTime() - start);
         }
 
         @Override
         public <S> void writeObject(S obj, ObjectOutput<C> output) throws UncheckedIOException {
+            BiConsumer<Object, ObjectOutput<C>> writer = this.writer;
             if (writer == null) {
-                writer = createWriter(clazz, writeActions);
+                this.writer = writer = createWriter(clazz, writeActions);
             }
+            SerializerListener listener = ReflectionSerializerFactory.this.listener;
+            if (listener == null || output instanceof ObjectSizeCounter) {
+                writer.accept(obj, output);
+                return;
+            }
+            int position = output.getPosition();
+            long start = System.nanoTime();
             writer.accept(obj, output);
+            listener.onWrite(clazz, null, output.getPosition() - position, System.nanoTime() - start);
+        }
+
+        @Override
+        public <S> int sizeOf(S obj, C context) throws UncheckedIOException {
+            ObjectSizeCounter<C> counter = new ObjectSizeCounter<>(context == null ? null : context.getCharset(), ReflectionSerializerFactory.this, context);
+            writeObject(obj, counter);
+            return counter.getSize();
         }
 
         @Override
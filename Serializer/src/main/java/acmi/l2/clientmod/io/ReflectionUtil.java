@@ -33,27 +33,23 @@ public class ReflectionUtil {
         }
     }
 
+    public static FieldAccessor fieldAccessor(Field field) {
+        return ClassAccessor.of(field.getDeclaringClass()).getField(field);
+    }
+
+    public static MethodAccessor methodAccessor(Method method) {
+        return ClassAccessor.of(method.getDeclaringClass()).getMethod(method);
+    }
+
     public static void fieldSet(Field field, Object obj, Object value) {
-        try {
-            field.set(obj, value);
-        } catch (IllegalAccessException e) {
-            throw new SerializerException(e);
-        }
+        fieldAccessor(field).set(obj, value);
     }
 
     public static Object fieldGet(Field field, Object obj) {
-        try {
-            return field.get(obj);
-        } catch (IllegalAccessException e) {
-            throw new SerializerException(e);
-        }
+        return fieldAccessor(field).get(obj);
     }
 
     public static void invokeMethod(Method method, Object obj, Object... params) {
-        try {
-            method.invoke(obj, params);
-        } catch (ReflectiveOperationException e) {
-            throw new SerializerException(e);
-        }
+        methodAccessor(method).invoke(obj, params);
     }
 }
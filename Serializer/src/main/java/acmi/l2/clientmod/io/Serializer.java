@@ -29,4 +29,14 @@ public interface Serializer<T, C extends Context> {
     <S extends T> void readObject(S obj, ObjectInput<C> input) throws UncheckedIOException;
 
     <S extends T> void writeObject(S obj, ObjectOutput<C> output) throws UncheckedIOException;
+
+    /**
+     * Number of bytes {@link #writeObject} produces for {@code obj}.
+     * Serializers writing nested objects through {@link ObjectOutput#write} need a factory and should override this.
+     */
+    default <S extends T> int sizeOf(S obj, C context) throws UncheckedIOException {
+        ObjectSizeCounter<C> counter = new ObjectSizeCounter<>(context == null ? null : context.getCharset(), null, context);
+        writeObject(obj, counter);
+        return counter.getSize();
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.lang.reflect.Field;
+
+/**
+ * Flight recorder event for one serializer call, committed by {@link #listener(boolean)}.
+ */
+@Name("acmi.l2.clientmod.io.Serialization")
+@Label("Serialization")
+@Category("L2 Client Mod")
+@StackTrace(false)
+public class SerializerEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Type")
+    Class<?> type;
+
+    @Label("Field")
+    String field;
+
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Time")
+    @Timespan
+    long time;
+
+    public static SerializerListener listener(boolean fieldLevel) {
+        return new SerializerListener() {
+            @Override
+            public void onRead(Class<?> type, Field field, int bytes, long nanos) {
+                commit("read", type, field, bytes, nanos);
+            }
+
+            @Override
+            public void onWrite(Class<?> type, Field field, int bytes, long nanos) {
+                commit("write", type, field, bytes, nanos);
+            }
+
+            @Override
+            public boolean isFieldLevel() {
+                return fieldLevel;
+            }
+        };
+    }
+
+    private static void commit(String operation, Class<?> type, Field field, int bytes, long nanos) {
+        SerializerEvent event = new SerializerEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.operation = operation;
+        event.type = type;
+        event.field = field == null ? null : field.getName();
+        event.bytes = bytes;
+        event.time = nanos;
+        event.commit();
+    }
+}
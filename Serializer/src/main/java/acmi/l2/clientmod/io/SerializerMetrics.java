@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2021 acmi
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package acmi.l2.clientmod.io;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SerializerListener} summing call counts, bytes and time per class and, optionally, per field.
+ */
+public class SerializerMetrics implements SerializerListener {
+    private final boolean fieldLevel;
+    private final Map<Class<?>, Counters> classes = new ConcurrentHashMap<>();
+    private final Map<Field, Counters> fields = new ConcurrentHashMap<>();
+
+    public SerializerMetrics() {
+        this(false);
+    }
+
+    public SerializerMetrics(boolean fieldLevel) {
+        this.fieldLevel = fieldLevel;
+    }
+
+    @Override
+    public boolean isFieldLevel() {
+        return fieldLevel;
+    }
+
+    @Override
+    public void onRead(Class<?> type, Field field, int bytes, long nanos) {
+        counters(type, field).add(true, bytes, nanos);
+    }
+
+    @Override
+    public void onWrite(Class<?> type, Field field, int bytes, long nanos) {
+        counters(type, field).add(false, bytes, nanos);
+    }
+
+    private Counters counters(Class<?> type, Field field) {
+        return field == null ?
+                classes.computeIfAbsent(type, k -> new Counters()) :
+                fields.computeIfAbsent(field, k -> new Counters());
+    }
+
+    public Map<Class<?>, Stats> snapshot() {
+        return snapshot(classes);
+    }
+
+    public Map<Field, Stats> fieldSnapshot() {
+        return snapshot(fields);
+    }
+
+    private static <K> Map<K, Stats> snapshot(Map<K, Counters> map) {
+        Map<K, Stats> snapshot = new LinkedHashMap<>();
+        map.forEach((key, counters) -> snapshot.put(key, counters.snapshot()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public void reset() {
+        classes.clear();
+        fields.clear();
+    }
+
+    public static final class Stats {
+        private final long readCount;
+        private final long readBytes;
+        private final long readNanos;
+        private final long writeCount;
+        private final long writeBytes;
+        private final long writeNanos;
+
+        Stats(long readCount, long readBytes, long readNanos, long writeCount, long writeBytes, long writeNanos) {
+            this.readCount = readCount;
+            this.readBytes = readBytes;
+            this.readNanos = readNanos;
+            this.writeCount = writeCount;
+            this.writeBytes = writeBytes;
+            this.writeNanos = writeNanos;
+        }
+
+        public long getReadCount() {
+            return readCount;
+        }
+
+        public long getReadBytes() {
+            return readBytes;
+        }
+
+        public long getReadNanos() {
+            return readNanos;
+        }
+
+        public long getWriteCount() {
+            return writeCount;
+        }
+
+        public long getWriteBytes() {
+            return writeBytes;
+        }
+
+        public long getWriteNanos() {
+            return writeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[read=" + readCount + "/" + readBytes + "B/" + readNanos + "ns" +
+                    ", write=" + writeCount + "/" + writeBytes + "B/" + writeNanos + "ns]";
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder readCount = new LongAdder();
+        final LongAdder readBytes = new LongAdder();
+        final LongAdder readNanos = new LongAdder();
+        final LongAdder writeCount = new LongAdder();
+        final LongAdder writeBytes = new LongAdder();
+        final LongAdder writeNanos = new LongAdder();
+
+        void add(boolean read, int bytes, long nanos) {
+            if (read) {
+                readCount.increment();
+                readBytes.add(bytes);
+                readNanos.add(nanos);
+            } else {
+                writeCount.increment();
+                writeBytes.add(bytes);
+                writeNanos.add(nanos);
+            }
+        }
+
+        Stats snapshot() {
+            return new Stats(readCount.sum(), readBytes.sum(), readNanos.sum(), writeCount.sum(), writeBytes.sum(), writeNanos.sum());
+        }
+    }
+}
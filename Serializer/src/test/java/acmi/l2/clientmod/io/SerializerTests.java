@@ -21,12 +21,27 @@
  */
 package acmi.l2.clientmod.io;
 
+import acmi.l2.clientmod.io.annotation.*;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class SerializerTests {
     @Test
@@ -48,4 +63,385 @@ public class SerializerTests {
 
         assertEquals(testObject, deserialized);
     }
+
+    @Test
+    public void bytecodeDeserializationTest() {
+        TestClass testObject = new TestClass();
+        testObject.foo = new int[]{0, 123};
+        testObject.bar = "test";
+        testObject.baz = new TestClass.InnerClassExtends(10, 20);
+
+        SerializerFactory<Context> serializerFactory = new BytecodeSerializerFactory<>();
+        TestClass deserialized = read(serializerFactory, TestClass.class, write(serializerFactory, testObject));
+
+        assertEquals(testObject, deserialized);
+    }
+
+    @Test
+    public void bytecodeCompatibilityTest() {
+        Primitives primitives = new Primitives();
+        primitives.b = -5;
+        primitives.s = -1234;
+        primitives.compact = -100000;
+        primitives.ubyte = 200;
+        primitives.ushort = 60000;
+        primitives.i = Integer.MIN_VALUE;
+        primitives.l = Long.MAX_VALUE;
+        primitives.f = 1.5f;
+        primitives.utf = "utf \u0444";
+        primitives.custom = "custom";
+        primitives.line = "line";
+        primitives.bytes = new byte[]{1, -1, 127};
+        primitives.floats = new float[]{0.25f, -8f};
+        primitives.compacts = new int[]{0, 63, 64, -8192};
+        primitives.pair = new long[]{1, -1};
+        primitives.strings = new String[]{"a", "", "c"};
+        primitives.shorts = new short[]{-1, 0, 0x1234};
+        primitives.ints = new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE};
+
+        SerializerFactory<Context> reflection = new ReflectionSerializerFactory<>();
+        SerializerFactory<Context> bytecode = new BytecodeSerializerFactory<>();
+
+        byte[] expected = write(reflection, primitives);
+        assertArrayEquals(expected, write(bytecode, primitives));
+        assertArrayEquals(expected, write(reflection, read(bytecode, Primitives.class, expected)));
+        assertArrayEquals(expected, write(bytecode, read(reflection, Primitives.class, expected)));
+    }
+
+    @Test
+    public void bufferTest() {
+        Primitives primitives = new Primitives();
+        primitives.s = -2;
+        primitives.compact = Integer.MIN_VALUE;
+        primitives.ushort = 65535;
+        primitives.l = -3;
+        primitives.f = 0.75f;
+        primitives.utf = "utf";
+        primitives.custom = "custom";
+        primitives.line = "line \u0444";
+        primitives.bytes = new byte[]{5};
+        primitives.floats = new float[]{1f, 2f};
+        primitives.compacts = new int[]{0, -64, 64, 1 << 20, Integer.MAX_VALUE, -Integer.MAX_VALUE};
+        primitives.pair = new long[]{Long.MIN_VALUE, 7};
+        primitives.strings = new String[0];
+        primitives.shorts = new short[]{1, -1};
+        primitives.ints = new int[]{9, 8, 7};
+
+        SerializerFactory<Context> serializerFactory = new ReflectionSerializerFactory<>();
+        byte[] expected = write(serializerFactory, primitives);
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(expected.length), ByteBuffer.allocateDirect(expected.length)}) {
+            ObjectOutputBuffer<Context> output = new ObjectOutputBuffer<>(buffer, UnrealPackage.getDefaultCharset(), serializerFactory, null);
+            output.write(primitives);
+            assertEquals(expected.length, output.getPosition());
+            assertEquals(0, buffer.position());
+            assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+
+            byte[] actual = new byte[expected.length];
+            buffer.duplicate().get(actual);
+            assertArrayEquals(expected, actual);
+
+            ObjectInputBuffer<Context> input = new ObjectInputBuffer<>(buffer, UnrealPackage.getDefaultCharset(), serializerFactory, null);
+            assertArrayEquals(expected, write(serializerFactory, input.readObject(Primitives.class)));
+            assertEquals(expected.length, input.getPosition());
+            assertEquals(0, buffer.position());
+            assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        }
+
+        ObjectInput<Context> adapter = ObjectInput.objectInput(DataInput.dataInput(ByteBuffer.wrap(expected), UnrealPackage.getDefaultCharset()), serializerFactory, null);
+        assertArrayEquals(expected, write(serializerFactory, adapter.readObject(Primitives.class)));
+    }
+
+    @Test
+    public void sizeOfTest() {
+        TestClass testObject = new TestClass();
+        testObject.foo = new int[]{0, 123};
+        testObject.bar = "test \u0444";
+        testObject.baz = new TestClass.InnerClassExtends(10, 20);
+        Primitives primitives = new Primitives();
+        primitives.compact = -100000;
+        primitives.utf = "utf";
+        primitives.custom = "";
+        primitives.line = "line";
+        primitives.bytes = new byte[3];
+        primitives.floats = new float[2];
+        primitives.compacts = new int[]{1, 1 << 10, 1 << 20, 1 << 30};
+        primitives.pair = new long[2];
+        primitives.strings = new String[]{"a", "b \u0444"};
+        primitives.shorts = new short[1];
+        primitives.ints = new int[4];
+        Context context = new Context() {
+            @Override
+            public Charset getCharset() {
+                return UnrealPackage.getDefaultCharset();
+            }
+        };
+
+        for (SerializerFactory<Context> serializerFactory : new SerializerFactory[]{new ReflectionSerializerFactory<>(), new BytecodeSerializerFactory<>()}) {
+            for (Object obj : new Object[]{testObject, primitives}) {
+                byte[] expected = write(serializerFactory, obj);
+                int size = serializerFactory.forClass((Class<Object>) obj.getClass()).sizeOf(obj, context);
+                assertEquals(expected.length, size);
+
+                ObjectOutputBuffer<Context> output = new ObjectOutputBuffer<>(ByteBuffer.allocate(size), UnrealPackage.getDefaultCharset(), serializerFactory, null);
+                output.write(obj);
+                ByteBuffer buffer = output.getBuffer();
+                assertEquals(0, buffer.remaining());
+                assertArrayEquals(expected, buffer.array());
+            }
+        }
+    }
+
+    @Test
+    public void lazyTest() {
+        Lazies lazies = new Lazies();
+        lazies.floats = new LazyValue<>(new float[]{1f, 2f, 3f});
+        lazies.ushorts = new LazyValue<>(new int[]{0, 65535});
+        lazies.points = new LazyValue<>(new Lazies.Point[]{new Lazies.Point(1, (short) 2, 3f), new Lazies.Point(-1, (short) -2, -3f)});
+        lazies.tail = "tail";
+
+        SerializerFactory<Context> serializerFactory = new ReflectionSerializerFactory<>();
+        byte[] expected = write(serializerFactory, lazies);
+
+        Lazies fromStream = read(serializerFactory, Lazies.class, expected);
+        Lazies fromBuffer = new ObjectInputBuffer<>(ByteBuffer.wrap(expected), UnrealPackage.getDefaultCharset(), serializerFactory, null).readObject(Lazies.class);
+        assertEquals(fromStream.floats, fromBuffer.floats);
+        assertEquals(lazies.floats.hashCode(), fromBuffer.floats.hashCode());
+        assertFalse(fromStream.floats.isDecoded() || fromBuffer.floats.isDecoded());
+        for (Lazies obj : new Lazies[]{fromStream, fromBuffer}) {
+            assertEquals("tail", obj.tail);
+            assertFalse(obj.floats.isDecoded());
+            assertArrayEquals(expected, write(serializerFactory, obj));
+            assertFalse(obj.points.isDecoded());
+
+            assertArrayEquals(new float[]{1f, 2f, 3f}, obj.floats.get(), 0f);
+            assertArrayEquals(new int[]{0, 65535}, obj.ushorts.get());
+            assertEquals(lazies.points, obj.points);
+            assertArrayEquals(expected, write(serializerFactory, obj));
+
+            obj.ushorts.get()[1] = 7;
+            assertArrayEquals(new int[]{0, 7}, read(serializerFactory, Lazies.class, write(serializerFactory, obj)).ushorts.get());
+        }
+    }
+
+    @Test(expected = SerializerException.class)
+    public void lazyVariableSizeTest() {
+        new ReflectionSerializerFactory<>().forClass(InvalidLazy.class);
+    }
+
+    @Test
+    public void metricsTest() throws NoSuchFieldException {
+        TestClass testObject = new TestClass();
+        testObject.foo = new int[]{0, 123};
+        testObject.bar = "test";
+        testObject.baz = new TestClass.InnerClassExtends(10, 20);
+
+        ReflectionSerializerFactory<Context> serializerFactory = new BytecodeSerializerFactory<>();
+        SerializerMetrics metrics = new SerializerMetrics(true);
+        serializerFactory.setListener(metrics);
+        byte[] data = write(serializerFactory, testObject);
+        read(serializerFactory, TestClass.class, data);
+
+        SerializerMetrics.Stats stats = metrics.snapshot().get(TestClass.class);
+        assertEquals(1, stats.getReadCount());
+        assertEquals(data.length, stats.getReadBytes());
+        assertEquals(1, stats.getWriteCount());
+        assertEquals(data.length, stats.getWriteBytes());
+        SerializerMetrics.Stats bar = metrics.fieldSnapshot().get(TestClass.class.getDeclaredField("bar"));
+        assertEquals(1, bar.getReadCount());
+        assertTrue(bar.getReadBytes() > 0);
+        assertEquals(bar.getWriteBytes(), bar.getReadBytes());
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+        serializerFactory.setListener(null);
+        read(serializerFactory, TestClass.class, data);
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void accessorTest() {
+        Primitives from = new Primitives();
+        from.b = 7;
+        from.i = 42;
+        from.line = "line";
+        Primitives to = new Primitives();
+        for (FieldAccessor accessor : ClassAccessor.of(Primitives.class).getFields()) {
+            accessor.copy(from, to);
+            assertEquals(accessor.get(from), accessor.get(to));
+        }
+
+        FieldAccessor b = ClassAccessor.of(Primitives.class).getFields().get(0);
+        b.setByte(to, (byte) -3);
+        assertEquals(-3, b.getByte(to));
+        assertEquals((byte) -3, b.get(to));
+    }
+
+    @Test
+    public void concurrentDeserializationTest() throws Exception {
+        TestClass testObject = new TestClass();
+        testObject.foo = new int[]{0, 123};
+        testObject.bar = "test";
+        testObject.baz = new TestClass.InnerClassExtends(10, 20);
+        Primitives primitives = new Primitives();
+        primitives.utf = "utf";
+        primitives.custom = "custom";
+        primitives.line = "line";
+        primitives.bytes = new byte[]{1, 2};
+        primitives.floats = new float[]{0.5f};
+        primitives.compacts = new int[]{-1, 1000};
+        primitives.pair = new long[]{3, 4};
+        primitives.strings = new String[]{"s"};
+        primitives.shorts = new short[0];
+        primitives.ints = new int[]{5};
+        Tree tree = new Tree(1, new Tree(2, new Tree(3)), new Tree(4));
+
+        SerializerFactory<Context> reference = new ReflectionSerializerFactory<>();
+        byte[] testObjectData = write(reference, testObject);
+        byte[] primitivesData = write(reference, primitives);
+        byte[] treeData = write(reference, tree);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                SerializerFactory<Context> serializerFactory = round % 2 == 0 ?
+                        new ReflectionSerializerFactory<>() :
+                        new BytecodeSerializerFactory<>();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Serializer>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (int j = 0; j < 50; j++) {
+                            assertEquals(testObject, read(serializerFactory, TestClass.class, testObjectData));
+                            assertArrayEquals(primitivesData, write(reference, read(serializerFactory, Primitives.class, primitivesData)));
+                            assertEquals(tree, read(serializerFactory, Tree.class, treeData));
+                        }
+                        return serializerFactory.forClass(Tree.class);
+                    }));
+                }
+                start.countDown();
+                Serializer first = futures.get(0).get();
+                for (Future<Serializer> future : futures) {
+                    assertSame(first, future.get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] write(SerializerFactory<Context> serializerFactory, Object obj) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutput<Context> objectOutput = new ObjectOutputStream<>(baos, UnrealPackage.getDefaultCharset(), serializerFactory, null);
+        objectOutput.write(obj);
+        return baos.toByteArray();
+    }
+
+    private static <T> T read(SerializerFactory<Context> serializerFactory, Class<T> clazz, byte[] data) {
+        ObjectInput<Context> objectInput = new ObjectInputStream<>(new ByteArrayInputStream(data), UnrealPackage.getDefaultCharset(), serializerFactory, null);
+        return objectInput.readObject(clazz);
+    }
+
+    public static class Primitives {
+        private byte b;
+        short s;
+        @Compact
+        public int compact;
+        @UByte
+        public int ubyte;
+        @UShort
+        public int ushort;
+        public int i;
+        public long l;
+        public float f;
+        @UTF
+        public String utf;
+        @Custom(StringSerializer.class)
+        public String custom;
+        public String line;
+        @Length(Length.Type.BYTE)
+        public byte[] bytes;
+        @Length(Length.Type.INT)
+        public float[] floats;
+        @Compact
+        public int[] compacts;
+        @Length(value = Length.Type.CONST, length = 2)
+        public long[] pair;
+        public String[] strings;
+        public short[] shorts;
+        public int[] ints;
+    }
+
+    public static class Tree {
+        public int value;
+        public Tree[] children;
+
+        public Tree() {
+        }
+
+        public Tree(int value, Tree... children) {
+            this.value = value;
+            this.children = children;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Tree tree = (Tree) o;
+            return value == tree.value && Arrays.equals(children, tree.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * value + Arrays.hashCode(children);
+        }
+    }
+
+    public static class Lazies {
+        @Lazy
+        @Length(Length.Type.INT)
+        public LazyValue<float[]> floats;
+        @Lazy
+        @UShort
+        public LazyValue<int[]> ushorts;
+        @Lazy
+        public LazyValue<Point[]> points;
+        public String tail;
+
+        public static class Point {
+            public int x;
+            public short y;
+            public float z;
+
+            public Point() {
+            }
+
+            public Point(int x, short y, float z) {
+                this.x = x;
+                this.y = y;
+                this.z = z;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (o == null || getClass() != o.getClass()) return false;
+                Point point = (Point) o;
+                return x == point.x && y == point.y && Float.compare(point.z, z) == 0;
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * (31 * x + y) + Float.hashCode(z);
+            }
+        }
+    }
+
+    public static class InvalidLazy {
+        @Lazy
+        public LazyValue<String[]> strings;
+    }
 }
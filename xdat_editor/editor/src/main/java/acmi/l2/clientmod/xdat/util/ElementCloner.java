@@ -24,11 +24,11 @@
  */
 package acmi.l2.clientmod.xdat.util;
 
+import acmi.l2.clientmod.io.ClassAccessor;
+import acmi.l2.clientmod.io.FieldAccessor;
 import acmi.l2.clientmod.util.IOEntity;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -72,19 +72,17 @@ public class ElementCloner {
         copyFields(source, target, clazz.getSuperclass());
 
         // Process declared fields
-        for (Field field : clazz.getDeclaredFields()) {
-            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+        for (FieldAccessor field : ClassAccessor.of(clazz).getFields()) {
+            if (isPrimitiveOrWrapper(field.getType()) || field.getType() == String.class) {
+                // Primitives and strings are immutable, direct copy
+                field.copy(source, target);
                 continue;
             }
 
-            field.setAccessible(true);
             Object value = field.get(source);
 
             if (value == null) {
                 field.set(target, null);
-            } else if (isPrimitiveOrWrapper(field.getType()) || field.getType() == String.class) {
-                // Primitives and strings are immutable, direct copy
-                field.set(target, value);
             } else if (field.getType().isArray()) {
                 // Deep clone arrays
                 field.set(target, cloneArray(value));